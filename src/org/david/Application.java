@@ -1,19 +1,34 @@
 package org.david;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.david.exceptions.RegisterValidationException;
+import org.david.input.InputSource;
+import org.david.input.Parsers;
+import org.david.input.ScannerInput;
+import org.david.metrics.HistogramTracer;
 import org.david.models.Piloto;
+import org.david.options.DefaultOptionProperty;
 import org.david.options.Option;
+import org.david.storage.PilotImporter;
+import org.david.storage.PilotJournal;
+import org.david.storage.PilotStore;
 import org.david.utils.DataRegister;
 import org.david.utils.Keys;
 import org.david.utils.Options;
-import org.david.utils.Utils;
 
 import static org.david.utils.Options.create;
+import static org.david.utils.Options.hidden;
 import static org.david.utils.Options.ask;
-import static org.david.utils.Options.of;;
+import static org.david.utils.Options.of;
 
 /**
  * 
@@ -30,26 +45,107 @@ public class Application {
    */
   public static final int EXPANSION_LIMIT = 10;
 
+  /**
+   * Quantos pilotos são mostrados por página na listagem.
+   */
+  public static final int PAGE_SIZE = 50;
+
+  /**
+   * Quantidade máxima de pilotos mostrados por uma busca.
+   */
+  public static final int QUERY_LIMIT = 100;
+
+  /**
+   * Propriedade de sistema com o intervalo, em segundos, do resumo periódico
+   * dos tempos das opções. Sem ela o resumo só aparece pela opção "stats".
+   */
+  public static final String STATS_INTERVAL_PROPERTY = "prova2.stats.interval";
+
   /**
    * Todas as opções que a aplicação possui.
    */
   private final DataRegister<Option<Boolean>> globalOptions;
 
   /**
-   * Lista dos pilotos.
+   * Lista dos pilotos com os índices, o armazenamento e o log dela.
    */
-  private final DataRegister<Piloto> pilots;
+  private final PilotRegistry registry;
+
+  /**
+   * Falso quando a lista é compartilhada com outras sessões, nesse caso
+   * quem fecha a lista é quem criou ela.
+   */
+  private final boolean ownsRegistry;
 
   /**
    * Input do usuário.
    */
-  private final Scanner scanner;
+  private final InputSource input;
+
+  /**
+   * Saída do menu e das opções, o System.out no console ou o socket de uma
+   * sessão do {@link org.david.server.PilotServer}.
+   */
+  private final PrintStream out;
+
+  /**
+   * Buffer reutilizado pela listagem, cada página é escrita de uma vez.
+   */
+  private final StringBuilder page = new StringBuilder(PAGE_SIZE * 64);
+
+  /**
+   * Tempos de cada opção, separando a espera pelo input da execução.
+   * Compartilhado pelas sessões de um servidor.
+   */
+  private final HistogramTracer tracer;
+
+  public Application(final InputSource input, final int initialCapacity, final PilotStore storage,
+	  final PilotJournal journal) {
+	this(input, System.out, new PilotRegistry(initialCapacity, storage, journal), new HistogramTracer(), true);
+  }
+
+  /**
+   * Aplicação sobre uma lista compartilhada, usada pelas sessões do
+   * {@link org.david.server.PilotServer}. Encerrar a aplicação não fecha a
+   * lista nem para o resumo periódico do tracer, os dois são de quem criou.
+   *
+   * @param out saída da sessão.
+   * @param tracer tempos das opções, somados com os das outras sessões.
+   */
+  public Application(final InputSource input, final PrintStream out, final PilotRegistry registry,
+	  final HistogramTracer tracer) {
+	this(input, out, registry, tracer, false);
+  }
 
   public Application(final Scanner scanner, final int initialCapacity) {
-	this.pilots = new DataRegister<>();
+	this(new ScannerInput(scanner), initialCapacity, null, null);
+  }
+
+  private Application(final InputSource input, final PrintStream out, final PilotRegistry registry,
+	  final HistogramTracer tracer, final boolean ownsRegistry) {
+
+	if (registry == null)
+	  throw new NullPointerException("Lista dos pilotos nula.");
+
+	if (out == null || tracer == null)
+	  throw new NullPointerException("Saída ou tracer nulos.");
+
+	this.registry = registry;
+	this.ownsRegistry = ownsRegistry;
 	this.globalOptions = new DataRegister<>();
-	this.scanner = scanner;
+	this.input = input;
+	this.out = out;
+	this.tracer = tracer;
 	setupAllOptions();
+
+	/* as sessões do servidor não publicam métricas, e o resumo é do servidor */
+	if (!ownsRegistry)
+	  return;
+
+	enableMetrics();
+	long statsInterval = Long.getLong(STATS_INTERVAL_PROPERTY, 0L);
+	if (statsInterval > 0)
+	  tracer.startPeriodicDump(statsInterval, TimeUnit.SECONDS, System.err);
   }
 
   /**
@@ -63,15 +159,22 @@ public class Application {
 	addOption(
 		create(of(
 			ask(Keys.NAME_KEY, "Digite o nome do piloto: ", String.class),
-			ask(Keys.CPF_KEY, "Digite o cpf do piloto: ", String.class),
-			ask(Keys.LICENSE_KEY, "Digite a licensa do piloto: ", String.class)), handlerMap -> {
+			ask(Keys.CPF_KEY, "Digite o cpf do piloto: ", Long.class, Parsers.CPF),
+			ask(Keys.LICENSE_KEY, "Digite a licensa do piloto: ", String.class, Parsers.LICENSE)), handlerMap -> {
+
+			  Piloto newPilot;
+			  try {
+				newPilot = Options.createPilot(handlerMap);
+			  }catch(IllegalArgumentException e) {
+				out.println(e.getMessage());
+				return true;
+			  }
 
-			  Piloto newPilot = Options.createPilot(handlerMap);
-			  System.out.println("Novo piloto adicionado [" + newPilot.getCPF() + "].");
 			  try {
-				pilots.add(newPilot);
-			  }catch(IndexOutOfBoundsException e) {
-				System.out.println(e.getMessage());
+				registry.register(newPilot);
+				out.println("Novo piloto adicionado [" + newPilot.getCPF() + "].");
+			  }catch(IndexOutOfBoundsException | IllegalArgumentException | UncheckedIOException e) {
+				out.println(e.getMessage());
 			  }
 			  return true;
 
@@ -80,63 +183,229 @@ public class Application {
 	/* listagem dos pilotos */
 	addOption(
 		create(handlerMap -> {
-		  if(!pilots.isEmpty()) {
-			pilots.forEach(System.out::println);
+		  if(!registry.isEmpty()) {
+			listPilots();
 		  }else {
-			System.out.println("Nenhum piloto foi cadastrado.");
+			out.println("Nenhum piloto foi cadastrado.");
 		  }
 
 		  return true;
 
 		}, "<Listar pilotos>"));
 
-	/* Consultar piloto pelo CPF */
+	/* listagem dos pilotos ordenados pelo CPF */
+	addOption(
+		create(handlerMap -> {
+		  if(!registry.isEmpty()) {
+			listPilotsByCpf(Long.MIN_VALUE, Long.MAX_VALUE);
+		  }else {
+			out.println("Nenhum piloto foi cadastrado.");
+		  }
+
+		  return true;
+
+		}, "<Listar pilotos ordenados pelo CPF>"));
+
+	/* listagem dos pilotos de uma faixa de CPF */
 	addOption(
 		create(of(
-			ask(Keys.CPF_KEY, "Digite o CPF para consulta: ", String.class)), handlerMap -> { 
-			  String cpf = (String)handlerMap.get(Keys.CPF_KEY);
-			  if(cpf == null || cpf.isEmpty()) {
-				System.out.println("CPF inválido.");
+			ask(Keys.CPF_FROM_KEY, "Digite o CPF inicial: ", Long.class, Parsers.CPF_NUMBER),
+			ask(Keys.CPF_TO_KEY, "Digite o CPF final: ", Long.class, Parsers.CPF_NUMBER)), handlerMap -> { 
+			  long from = (Long)handlerMap.get(Keys.CPF_FROM_KEY);
+			  long to = (Long)handlerMap.get(Keys.CPF_TO_KEY);
+			  Piloto first = registry.ceiling(from);
+			  if(first == null || first.getCpfKey() > to) {
+				out.println("Não achei nada.");
 			  }else {
-				for(int i = 0; i < pilots.size(); i++) {
-				  if(pilots.get(i).getCPF().equals(cpf)) {
-					System.out.println(pilots.get(i));
-					break;
-				  }
-				}
+				listPilotsByCpf(from, to);
 			  }
-			  System.out.println("Não achei nada.");
+			  return true;
+
+			}, "<Listar pilotos por faixa de CPF>"));
+
+	/* Consultar piloto pelo CPF */
+	addOption(
+		create(of(
+			ask(Keys.CPF_KEY, "Digite o CPF para consulta: ", Long.class, Parsers.CPF)), handlerMap -> { 
+			  long cpf = (Long)handlerMap.get(Keys.CPF_KEY);
+			  Piloto pilot = registry.findByCpf(cpf);
+			  out.println(pilot != null ? pilot : "Não achei nada.");
 			  return true;
 
 			}, "<Listar piloto pelo CPF>"));
 
-	/* Expansão da lista dos pilotos  */
+	/* Busca dos pilotos pelo início do nome */
 	addOption(
 		create(of(
-			ask(Keys.EXPAND_KEY, "Digite o quanto você quer aumentar a lista: ", Integer.class)), handlerMap -> { 
-			  Integer more = (Integer)handlerMap.get(Keys.EXPAND_KEY);
-			  if(more != null) {
-				if(more > EXPANSION_LIMIT) {
-				  System.out.println("Você não pode expandir mais de" + EXPANSION_LIMIT + " de uma vez.");
-				  return true;
-				}
+			ask(Keys.NAME_PREFIX_KEY, "Digite o início do nome: ", String.class)), handlerMap -> { 
+			  printPilots(registry.startingWith((String)handlerMap.get(Keys.NAME_PREFIX_KEY), QUERY_LIMIT));
+			  return true;
+
+			}, "<Buscar piloto pelo início do nome>"));
+
+	/* Busca dos pilotos pela licença e pelo nome */
+	addOption(
+		create(of(
+			ask(Keys.LICENSE_KEY, "Digite a licença (" + Options.ANY + " para qualquer uma): ", String.class),
+			ask(Keys.NAME_FRAGMENT_KEY, "Digite um trecho do nome (" + Options.ANY + " para qualquer um): ", String.class)), handlerMap -> { 
+			  String license = (String)handlerMap.get(Keys.LICENSE_KEY);
+			  String nameFragment = (String)handlerMap.get(Keys.NAME_FRAGMENT_KEY);
+			  List<Piloto> found = Options.ANY.equals(nameFragment) && !Options.ANY.equals(license)
+				  ? registry.withLicense(license, QUERY_LIMIT)
+				  : registry.query(Options.pilotFilter(license, nameFragment), QUERY_LIMIT);
+			  printPilots(found);
+			  return true;
+
+			}, "<Buscar pilotos pela licença e pelo nome>"));
+
+	/*
+	 * só no console: numa sessão do servidor a importação leria arquivos do
+	 * servidor a pedido de qualquer cliente, e expandir ou compactar mudaria
+	 * a lista de todas as sessões.
+	 */
+	if (ownsRegistry) {
+	  /* Importação de pilotos de um arquivo CSV */
+	  addOption(
+		  create(of(
+			  ask(Keys.FILE_KEY, "Digite o caminho do arquivo (cpf,nome,licença): ", String.class)), handlerMap -> { 
+				String path = (String)handlerMap.get(Keys.FILE_KEY);
 				try {
-				  pilots.expand(more);
-				} catch (RegisterValidationException | IllegalArgumentException e) {
-				  System.out.println(e.getMessage());
+				  PilotImporter.Result result = PilotImporter.read(Paths.get(path));
+				  int imported = registry.registerAll(result.pilots(), result.count());
+				  out.println(imported + " piloto(s) importado(s), "
+					  + (result.count() - imported + result.rejected()) + " linha(s) ignorada(s).");
+				} catch (IOException | IllegalArgumentException | UncheckedIOException e) {
+				  out.println("Não foi possível importar: " + e.getMessage());
 				}
-			  }
-			  else {
-				System.out.println("Valor inválido.");
-			  }
-			  return true;
+				return true;
+
+			  }, "<Importar pilotos de um arquivo CSV>"));
+
+	  /* Expansão da lista dos pilotos  */
+	  addOption(
+		  create(of(
+			  ask(Keys.EXPAND_KEY, "Digite o quanto você quer aumentar a lista: ", Integer.class)), handlerMap -> { 
+				Integer more = (Integer)handlerMap.get(Keys.EXPAND_KEY);
+				if(more != null) {
+				  if(more > EXPANSION_LIMIT) {
+					out.println("Você não pode expandir mais de" + EXPANSION_LIMIT + " de uma vez.");
+					return true;
+				  }
+				  try {
+					registry.expand(more);
+				  } catch (RegisterValidationException | IllegalArgumentException e) {
+					out.println(e.getMessage());
+				  }
+				}
+				else {
+				  out.println("Valor inválido.");
+				}
+				return true;
+
+			  }, "<Expandir lista de armazenamento>"));
+
+
+	  /* Compactação da lista dos pilotos */
+	  addOption(
+		  create(handlerMap -> {
+			int before = registry.capacity();
+			registry.trimToSize();
+			out.println("Capacidade: " + before + " -> " + registry.capacity() + ".");
+			return true;
+
+		  }, "<Compactar lista de armazenamento>"));
+	}
 
-			}, "<Expandir lista de armazenamento>"));
+	/* Quantidade de pilotos por licença */
+	addOption(
+		create(handlerMap -> {
+		  page.setLength(0);
+		  registry.forEachLicenseCount((license, count) -> page.append(license).append(": ").append(count).append('\n'));
+		  out.print(page.length() == 0 ? "Nenhum piloto com licença.\n" : page);
+		  return true;
 
+		}, "<Contar pilotos por licença>"));
 
 	/* encerrar o programa */
 	addOption(create((handlerMap) -> closeApplication(), "<Encerrar aplicação>"));
 
+	/* tempos das opções, escondida do menu e sempre a última */
+	addOption(hidden(handlerMap -> {
+	  tracer.dump(out);
+	  return true;
+	}, "stats"));
+
+  }
+
+  /**
+   * Lista os pilotos de página em página, perguntando antes de mostrar a próxima.
+   * 
+   * @throws NoSuchElementException caso o input tenha acabado.
+   */
+  private void listPilots() {
+	int cursor = 0;
+	do {
+	  page.setLength(0);
+	  cursor = registry.forEach(cursor, PAGE_SIZE, pilot -> page.append(pilot).append('\n'));
+	  out.print(page);
+	  out.flush();
+
+	  if (cursor >= registry.size())
+		return;
+
+	  out.println("Mostrando " + cursor + " de " + registry.size() + ". Mostrar mais? (s/n)");
+	} while (isYes(input.nextToken()));
+  }
+
+  /**
+   * Lista em ordem de CPF os pilotos da faixa, de página em página, perguntando
+   * antes de mostrar a próxima. Cada página continua a partir do último CPF mostrado.
+   * 
+   * @throws NoSuchElementException caso o input tenha acabado.
+   */
+  private void listPilotsByCpf(long from, long to) {
+	long[] last = { from };
+	long next = from;
+	do {
+	  page.setLength(0);
+	  registry.range(next, to, PAGE_SIZE, pilot -> {
+		page.append(pilot).append('\n');
+		last[0] = pilot.getCpfKey();
+	  });
+	  out.print(page);
+	  out.flush();
+
+	  if (last[0] >= to)
+		return;
+	  next = last[0] + 1;
+	  Piloto following = registry.ceiling(next);
+	  if (following == null || following.getCpfKey() > to)
+		return;
+
+	  out.println("Mostrar mais? (s/n)");
+	} while (isYes(input.nextToken()));
+  }
+
+  /**
+   * Mostra o resultado de uma busca de uma vez só.
+   */
+  private void printPilots(List<Piloto> found) {
+	if (found.isEmpty()) {
+	  out.println("Não achei nada.");
+	  return;
+	}
+
+	page.setLength(0);
+	for (Piloto pilot : found) {
+	  page.append(pilot).append('\n');
+	}
+	page.append(found.size()).append(" piloto(s) encontrado(s)")
+		.append(found.size() == QUERY_LIMIT ? ", a busca mostra no máximo " + QUERY_LIMIT + "." : ".");
+	out.println(page);
+  }
+
+  private static boolean isYes(CharSequence answer) {
+	return answer.length() == 1 && (answer.charAt(0) == 's' || answer.charAt(0) == 'S');
   }
 
   /**
@@ -144,15 +413,15 @@ public class Application {
    * na aplicação.
    */
   private void showGlobalMenu() {
-	System.out.println("\n****\nMENU");
+	out.println("\n****\nMENU");
 	AtomicInteger position = new AtomicInteger(0);
 	globalOptions.forEach((option) -> {
 	  if (option.isDisplayable()) {
-		System.out.println(position.incrementAndGet() - 1 + " - " + option.getDescription());
+		out.println(position.incrementAndGet() - 1 + " - " + option.getDescription());
 	  }
 	});
-	System.out.println("Tamanho da lista: " + pilots.size() + "/" + pilots.capacity());
-	System.out.println("****");
+	out.println("Tamanho da lista: " + registry.size() + "/" + registry.capacity());
+	out.println("****");
   }
 
   /**
@@ -161,10 +430,10 @@ public class Application {
    */
   private boolean selectGlobalOptions() {
 
-	int selectedOptionPosition = treatValue(scanner);
+	int selectedOptionPosition = treatValue(input);
 
 	if (!isValidOption(selectedOptionPosition)) {
-	  System.out.println("Opção inválida.");
+	  out.println("Opção inválida.");
 	  return true;
 	}
 
@@ -174,24 +443,41 @@ public class Application {
 
   /**
    * tratar a seleção de opção
+   * @throws NoSuchElementException caso o input tenha acabado.
    */
-  private Integer treatValue(Scanner scanner) {
-	Integer inputInt = null;
-	do {
-	  try {
-		inputInt = (Integer) Utils.getScannerByType(Integer.class, scanner);
-	  }catch(Exception e) {
-		System.out.println("Você digitou um valor que não corresponde ao tipo requerido.\n por favor, tente novamente.");
-	  }
-	} while (inputInt == null);
+  private int treatValue(InputSource input) {
+	CharSequence token = input.nextToken();
+	Integer inputInt = Parsers.INTEGER.parse(token);
+	while (inputInt == null) {
+	  int hidden = findHiddenOption(token);
+	  if (hidden >= 0)
+		return hidden;
+
+	  out.println("Você digitou um valor que não corresponde ao tipo requerido.\n por favor, tente novamente.");
+	  token = input.nextToken();
+	  inputInt = Parsers.INTEGER.parse(token);
+	}
 	return inputInt;
   }
 
+  /**
+   * @return a posição da opção escondida com o nome digitado, ou -1.
+   */
+  private int findHiddenOption(CharSequence name) {
+	String typed = name.toString();
+	for (int i = 0; i < globalOptions.size(); i++) {
+	  Option<Boolean> option = globalOptions.get(i);
+	  if (!option.isDisplayable() && typed.equalsIgnoreCase(option.getDescription()))
+		return i;
+	}
+	return -1;
+  }
+
   /**
    * Processa as opções
    */
   private boolean processOption(Option<Boolean> option) {
-	return Option.consumeOption(option, scanner);
+	return Option.consumeOption(option, input, tracer);
   }
 
   /**
@@ -206,13 +492,17 @@ public class Application {
   }
 
   /**
-   * Adiciona opção no sistema
+   * Adiciona opção no sistema. Uma {@link DefaultOptionProperty} passa a
+   * escrever as perguntas na saída da aplicação.
    */
   public void addOption(Option<Boolean> option) {
 
 	if (option == null)
 	  throw new NullPointerException("A aplicação não pode conter opções nulas.");
 
+	if (option instanceof DefaultOptionProperty)
+	  ((DefaultOptionProperty) option).setOutput(out);
+
 	try {
 	  globalOptions.dynamicallyAdd(option);
 	} catch (RegisterValidationException e) {
@@ -224,16 +514,46 @@ public class Application {
    * Executa a aplicação
    */
   public void execute() {
-	do {
-	  showGlobalMenu();
-	} while (selectGlobalOptions());
+	try {
+	  do {
+		showGlobalMenu();
+	  } while (selectGlobalOptions());
+	} catch (NoSuchElementException e) {
+	  /* o input acabou (ex.: fim do script) */
+	  closeApplication();
+	}
+  }
+
+  /**
+   * Publica as métricas das opções, uma vez por aplicação dona da lista.
+   * São retiradas no {@link Application#closeApplication()}.
+   */
+  private void enableMetrics() {
+	globalOptions.enableMetrics("globalOptions");
+	globalOptions.forEach((option) -> {
+	  if (option instanceof DefaultOptionProperty)
+		((DefaultOptionProperty) option).getRequiredProperties().enableMetrics("requiredProperties");
+	});
+  }
+
+  private void disableMetrics() {
+	globalOptions.forEach((option) -> {
+	  if (option instanceof DefaultOptionProperty)
+		((DefaultOptionProperty) option).getRequiredProperties().disableMetrics();
+	});
+	globalOptions.disableMetrics();
   }
 
   /**
    * retorna falso para a opção de encerrar aplicação
    */
   private boolean closeApplication() {
-	System.out.println("Aplicação encerrada.");
+	if (ownsRegistry) {
+	  registry.close();
+	  disableMetrics();
+	  tracer.stopPeriodicDump();
+	}
+	out.println("Aplicação encerrada.");
 	return false;
   }
 
@@ -242,12 +562,24 @@ public class Application {
 	return globalOptions;
   }
 
+  public PilotRegistry getRegistry() {
+	return registry;
+  }
+
   public DataRegister<Piloto> getPilots() {
-	return pilots;
+	return registry.getPilots();
+  }
+
+  public PilotStore getStorage() {
+	return registry.getStorage();
+  }
+
+  public PilotJournal getJournal() {
+	return registry.getJournal();
   }
 
-  public Scanner getScanner() {
-	return scanner;
+  public InputSource getInput() {
+	return input;
   }
 
 }
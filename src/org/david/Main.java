@@ -1,15 +1,81 @@
 package org.david;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
+import org.david.input.ByteInput;
+import org.david.input.InputSource;
+import org.david.input.ScannerInput;
+import org.david.server.PilotServer;
+import org.david.storage.MappedPilotStore;
+import org.david.storage.PilotJournal;
+
 public class Main {
 
   public static void main(String[] args) {
 
 	final int MAX_ELEMENTS = 20; /* valor inicial */
-	Scanner scanner = new Scanner(System.in);
-	Application application = new Application(scanner, MAX_ELEMENTS);
+
+	/* sem console o input vem de um script, então usa o leitor de bytes */
+	InputSource input = System.console() != null
+		? new ScannerInput(new Scanner(System.in))
+		: new ByteInput(System.in);
+
+	/* o primeiro argumento é o caminho base dos arquivos dos pilotos */
+	MappedPilotStore storage = null;
+	PilotJournal journal = null;
+	if (args.length > 0) {
+	  try {
+		storage = MappedPilotStore.open(Paths.get(args[0]), MAX_ELEMENTS);
+		journal = PilotJournal.open(Paths.get(args[0] + ".journal"));
+	  } catch (IOException | IllegalStateException e) {
+		System.out.println("Não foi possível abrir " + args[0] + ": " + e.getMessage());
+		return;
+	  }
+	}
+
+	/* com a porta definida, atende pela rede no lugar do console */
+	Integer port = Integer.getInteger(PilotServer.PORT_PROPERTY);
+	if (port != null) {
+	  serve(new PilotRegistry(MAX_ELEMENTS, storage, journal), port);
+	  return;
+	}
+
+	Application application = new Application(input, MAX_ELEMENTS, storage, journal);
  	application.execute();
   
   }
+
+  /**
+   * Roda o servidor até o processo ser encerrado, fechando a lista no final.
+   */
+  private static void serve(PilotRegistry registry, int port) {
+	PilotServer server;
+	try {
+	  server = PilotServer.open(registry, port);
+	} catch (IOException e) {
+	  System.out.println("Não foi possível abrir o servidor: " + e.getMessage());
+	  registry.close();
+	  return;
+	}
+
+	Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+	  try {
+		server.close();
+	  } catch (IOException e) {
+		e.printStackTrace();
+	  }
+	  registry.close();
+	}));
+
+	System.out.println("Servidor escutando em " + InetAddress.getLoopbackAddress().getHostAddress()
+		+ ":" + server.getPort() + ".");
+	try {
+	  server.serve();
+	} catch (IOException e) {
+	  System.out.println("O servidor parou: " + e.getMessage());
+	}
+  }
 }
@@ -0,0 +1,676 @@
+package org.david;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+
+import org.david.exceptions.RegisterValidationException;
+import org.david.models.LicenseDictionary;
+import org.david.models.Piloto;
+import org.david.options.Iterateable;
+import org.david.storage.PilotJournal;
+import org.david.storage.PilotStore;
+import org.david.utils.CapacityPolicies;
+import org.david.utils.CodeIndex;
+import org.david.utils.DataRegister;
+import org.david.utils.LongHashIndex;
+import org.david.utils.LongSkipListIndex;
+import org.david.utils.PrefixIndex;
+import org.david.utils.RegisterQuery;
+
+/**
+ * Lista dos pilotos junto com os índices, o armazenamento e o log dela.
+ *
+ * Pode ser usada por várias {@link Application} ao mesmo tempo (ex.: as sessões
+ * do {@link org.david.server.PilotServer}). As consultas seguram a trava de
+ * leitura e rodam em paralelo; cadastros, expansões e compactações seguram a
+ * trava de escrita, então os índices nunca são lidos no meio de uma alteração.
+ * Um cadastro só espera o log sem a trava, assim os cadastros de várias
+ * sessões dividem o mesmo force e as consultas não ficam paradas no disco.
+ *
+ * Com um armazenamento persistente, ele é a única cópia dos pilotos: a lista
+ * fica vazia, as páginas e os cadastros vão direto nele e os índices guardam
+ * só o número da linha de cada piloto. Os índices são montados na primeira
+ * consulta que precisa deles, então reabrir a lista não converte registro
+ * nenhum, e um piloto só vira objeto quando é devolvido por uma consulta.
+ *
+ * @author David Duarte Pinheiro
+ */
+public final class PilotRegistry implements Closeable {
+
+  /**
+   * Quantos cadastros o log acumula antes de um checkpoint.
+   */
+  public static final int CHECKPOINT_INTERVAL = 1000;
+
+  /**
+   * A lista dos pilotos diminui quando a ocupação fica abaixo de
+   * SHRINK_BELOW, voltando para uma ocupação de SHRINK_TARGET_FILL.
+   */
+  public static final double SHRINK_BELOW = 0.25;
+  public static final double SHRINK_TARGET_FILL = 0.5;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Lista dos pilotos, usada só sem um armazenamento persistente.
+   */
+  private final DataRegister<Piloto> pilots;
+
+  /**
+   * Índice dos pilotos pelo CPF, sincronizado com a lista dos pilotos.
+   */
+  private final LongHashIndex<Piloto> pilotsByCpf;
+
+  /**
+   * Índice dos pilotos pelo início do nome, sincronizado com a lista dos pilotos.
+   */
+  private final PrefixIndex<Piloto> pilotsByName;
+
+  /**
+   * Índice dos pilotos ordenado pelo CPF, sincronizado com a lista dos pilotos.
+   */
+  private final LongSkipListIndex<Piloto> pilotsInCpfOrder;
+
+  /**
+   * Índice dos pilotos pelo código da licença, sincronizado com a lista dos pilotos.
+   */
+  private final CodeIndex<Piloto> pilotsByLicense;
+
+  /**
+   * Armazenamento persistente dos pilotos, null caso a lista
+   * esteja só em memória.
+   */
+  private final PilotStore storage;
+
+  /**
+   * Log dos cadastros, null caso a lista esteja só em memória.
+   */
+  private final PilotJournal journal;
+
+  /**
+   * Índices das linhas do armazenamento, montados junto na primeira consulta
+   * que precisa deles. Null caso a lista esteja só em memória.
+   */
+  private final LongSkipListIndex<Integer> rowsInCpfOrder;
+  private final PrefixIndex<Integer> rowsByName;
+  private final CodeIndex<Integer> rowsByLicense;
+
+  /**
+   * Se as linhas do armazenamento já estão nos índices delas.
+   */
+  private volatile boolean indexed;
+
+  /**
+   * Se o armazenamento deixou de receber algum cadastro que está no log.
+   */
+  private boolean storageBehind;
+
+  /**
+   * CPFs dos cadastros validados que ainda não foram aplicados, reservados
+   * enquanto o {@link PilotRegistry#register(Piloto)} espera o log sem a trava.
+   */
+  private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+  public PilotRegistry(final int initialCapacity, final PilotStore storage, final PilotJournal journal) {
+	this.pilots = new DataRegister<>(initialCapacity, CapacityPolicies.shrinking(CapacityPolicies.DEFAULT,
+		SHRINK_BELOW, SHRINK_TARGET_FILL, initialCapacity));
+	this.pilots.setSnapshotIteration(true);
+	this.pilots.enableMetrics("pilots");
+	this.pilotsByCpf = new LongHashIndex<>(Piloto::getCpfKey);
+	this.pilots.addIndex(pilotsByCpf);
+	this.pilotsByName = new PrefixIndex<>(Piloto::getName, Piloto.NAME_SLOT);
+	this.pilots.addIndex(pilotsByName);
+	this.pilotsInCpfOrder = new LongSkipListIndex<>(Piloto::getCpfKey);
+	this.pilots.addIndex(pilotsInCpfOrder);
+	this.pilotsByLicense = new CodeIndex<>(Piloto::getLicenseCode, Piloto.LICENSE_SLOT);
+	this.pilots.addIndex(pilotsByLicense);
+	this.storage = storage;
+	this.journal = journal;
+	if (storage != null) {
+	  LicenseDictionary dictionary = LicenseDictionary.shared();
+	  this.rowsInCpfOrder = new LongSkipListIndex<>(storage::getCpfKey);
+	  this.rowsByName = new PrefixIndex<>(storage::getName);
+	  this.rowsByLicense = new CodeIndex<>(row -> dictionary.intern(storage.getLicense(row)));
+	} else {
+	  this.rowsInCpfOrder = null;
+	  this.rowsByName = null;
+	  this.rowsByLicense = null;
+	}
+	recoverJournal();
+	this.indexed = storage == null;
+  }
+
+  public PilotRegistry(final int initialCapacity) {
+	this(initialCapacity, null, null);
+  }
+
+  /**
+   * Coloca as linhas do armazenamento nos índices delas, na primeira vez que
+   * alguma consulta precisar deles. Chamado sem nenhuma trava.
+   */
+  private void ensureIndexed() {
+	if (indexed)
+	  return;
+
+	lock.writeLock().lock();
+	try {
+	  if (indexed)
+		return;
+
+	  for (int linha = 0; linha < storage.size(); linha++) {
+		indexRow(linha);
+	  }
+	  indexed = true;
+	} finally {
+	  lock.writeLock().unlock();
+	}
+  }
+
+  /**
+   * Coloca a linha do armazenamento nos índices. Chamado com a trava de escrita.
+   */
+  private void indexRow(int row) {
+	Integer linha = row;
+	rowsInCpfOrder.put(linha);
+	rowsByName.put(linha);
+	rowsByLicense.indexed(linha);
+  }
+
+  /**
+   * @return se as linhas do armazenamento já foram colocadas nos índices.
+   */
+  public boolean isIndexed() {
+	return indexed;
+  }
+
+  /**
+   * Reaplica os cadastros do log que não chegaram no armazenamento
+   * (ex.: a aplicação caiu antes do checkpoint).
+   */
+  private void recoverJournal() {
+	if (journal == null)
+	  return;
+
+	try {
+	  journal.replay(pilot -> {
+		/* com armazenamento, o piloto vai só para ele */
+		if (storage != null) {
+		  if (storage.indexOf(pilot.getCpfKey()) < 0)
+			storage.add(pilot);
+		} else if (!pilotsByCpf.containsKey(pilot.getCpfKey())) {
+		  try {
+			pilots.dynamicallyAdd(pilot);
+		  } catch (RegisterValidationException e) {
+			e.printStackTrace();
+		  }
+		}
+	  });
+	  checkpoint();
+	} catch (IOException e) {
+	  e.printStackTrace();
+	}
+  }
+
+  /**
+   * Força o armazenamento e esvazia o log. Sem um armazenamento persistente,
+   * ou com um que deixou de receber algum cadastro, o log é a única cópia
+   * dos cadastros, então ele não é esvaziado.
+   */
+  private void checkpoint() throws IOException {
+	/* um cadastro já gravado no log e ainda não aplicado se perderia no corte */
+	if (journal != null && storage instanceof Flushable && !storageBehind && pending.isEmpty())
+	  journal.checkpoint((Flushable) storage);
+  }
+
+  /**
+   * Registra o piloto no log e depois na lista ou, caso exista, no armazenamento
+   * persistente. O cadastro é validado antes de ir para o log, então um piloto
+   * que está no log sempre pode ser reaplicado. A lista cresce pela política
+   * dela quando está cheia, inclusive depois de um {@link PilotRegistry#trimToSize()}.
+   *
+   * A trava de escrita é segurada duas vezes: para validar e reservar o CPF, e
+   * para aplicar o cadastro. Entre as duas o cadastro espera o log sem trava,
+   * então cadastros de várias threads dividem o mesmo force.
+   *
+   * @throws IndexOutOfBoundsException caso a lista não consiga crescer.
+   * @throws IllegalArgumentException caso o CPF já exista ou o piloto não
+   * possa ser persistido.
+   * @throws UncheckedIOException caso o cadastro não possa ser gravado no log,
+   * nesse caso ele não é aplicado em lugar nenhum.
+   */
+  public void register(Piloto pilot) {
+	lock.writeLock().lock();
+	try {
+	  check(pilot);
+	  pending.add(pilot.getCpfKey());
+	} finally {
+	  lock.writeLock().unlock();
+	}
+
+	if (journal != null) {
+	  try {
+		journal.append(pilot);
+	  } catch (IOException | RuntimeException e) {
+		pending.remove(pilot.getCpfKey());
+		if (e instanceof IOException)
+		  throw new UncheckedIOException("Não foi possível gravar o cadastro no log.", (IOException) e);
+		throw (RuntimeException) e;
+	  }
+	}
+
+	lock.writeLock().lock();
+	try {
+	  apply(pilot);
+	  /* já aplicado, não segura mais o checkpoint */
+	  pending.remove(pilot.getCpfKey());
+	  checkpointIfNeeded();
+	} finally {
+	  pending.remove(pilot.getCpfKey());
+	  lock.writeLock().unlock();
+	}
+  }
+
+  /**
+   * Confere se o piloto pode ser registrado, chamado com a trava de escrita.
+   */
+  private void check(Piloto pilot) {
+
+	if (pilot == null)
+	  throw new NullPointerException("Nâo é possível adicionar um valor nulo.");
+
+	if (pending.contains(pilot.getCpfKey()) || pilotsByCpf.containsKey(pilot.getCpfKey()))
+	  throw new IllegalArgumentException("Já existe um piloto com o CPF [" + pilot.getCPF() + "].");
+
+	if (storage != null)
+	  storage.check(pilot);
+	else
+	  ensureRoom(1);
+  }
+
+  /**
+   * Aumenta a lista que não tem espaço para mais 'more' pilotos antes dos
+   * cadastros irem para o log, assim eles sempre cabem depois. Chamado com a
+   * trava de escrita.
+   */
+  private void ensureRoom(int more) {
+	int capacidade = pilots.capacity();
+	if (pilots.size() + more <= capacidade)
+	  return;
+
+	try {
+	  pilots.expand(pilots.getCapacityPolicy().grow(capacidade, pilots.size() + more) - capacidade);
+	} catch (RegisterValidationException e) {
+	  IndexOutOfBoundsException semEspaco = new IndexOutOfBoundsException("Registrador não possui espaço.");
+	  semEspaco.initCause(e);
+	  throw semEspaco;
+	}
+  }
+
+  /**
+   * Registra vários pilotos de uma vez, aumentando a lista uma única vez e
+   * gravando todos no log com um único force. Pilotos nulos, com CPF repetido
+   * ou que o armazenamento não aceita são ignorados.
+   *
+   * Os pilotos são validados antes do log e só aplicados depois dele, então
+   * caso o log falhe não há nada para desfazer.
+   *
+   * @return quantos pilotos foram registrados.
+   * @throws UncheckedIOException caso os cadastros não possam ser gravados no log.
+   */
+  public int registerAll(Piloto[] imported, int length) {
+	lock.writeLock().lock();
+	try {
+	  Piloto[] newPilots = new Piloto[length];
+	  Set<Long> cpfs = new HashSet<>();
+	  int validos = 0;
+	  for (int i = 0; i < length; i++) {
+		Piloto pilot = imported[i];
+		if (pilot == null || cpfs.contains(pilot.getCpfKey()))
+		  continue;
+		try {
+		  /* um cadastro esperando o log fora da trava já reservou o CPF */
+		  if (pending.contains(pilot.getCpfKey()) || pilotsByCpf.containsKey(pilot.getCpfKey()))
+			throw new IllegalArgumentException("Já existe um piloto com o CPF [" + pilot.getCPF() + "].");
+		  if (storage != null)
+			storage.check(pilot);
+		  cpfs.add(pilot.getCpfKey());
+		  newPilots[validos++] = pilot;
+		} catch (IllegalArgumentException e) {
+		  /* ignorado, como os repetidos */
+		}
+	  }
+
+	  if (storage == null) {
+		try {
+		  ensureRoom(validos);
+		} catch (IndexOutOfBoundsException e) {
+		  e.printStackTrace();
+		  return 0;
+		}
+	  }
+
+	  if (journal != null) {
+		try {
+		  journal.appendAll(newPilots, 0, validos);
+		} catch (IOException e) {
+		  throw new UncheckedIOException("Não foi possível gravar os cadastros no log.", e);
+		}
+	  }
+
+	  for (int i = 0; i < validos; i++) {
+		apply(newPilots[i]);
+	  }
+	  checkpointIfNeeded();
+	  return validos;
+	} finally {
+	  lock.writeLock().unlock();
+	}
+  }
+
+  /**
+   * Aplica um cadastro que já está no log: na lista ou, caso exista, no
+   * armazenamento e nos índices das linhas já montados. Chamado com a trava
+   * de escrita.
+   */
+  private void apply(Piloto pilot) {
+	if (storage == null) {
+	  ensureRoom(1);
+	  pilots.add(pilot);
+	  return;
+	}
+
+	int linha = store(pilot);
+	if (indexed && linha >= 0)
+	  indexRow(linha);
+  }
+
+  /**
+   * Coloca no armazenamento um piloto que já está no log. Caso o armazenamento
+   * falhe mesmo assim (ex.: disco cheio ao aumentar um arquivo), o cadastro
+   * continua valendo: o log passa a ser a única cópia e deixa de ser cortado,
+   * então o armazenamento recebe o piloto no próximo replay.
+   *
+   * @return a linha do piloto no armazenamento, ou -1 caso ele tenha falhado.
+   */
+  private int store(Piloto pilot) {
+	try {
+	  return storage.add(pilot);
+	} catch (RuntimeException e) {
+	  storageBehind = true;
+	  e.printStackTrace();
+	  return -1;
+	}
+  }
+
+  private void checkpointIfNeeded() {
+	if (journal == null || journal.recordsSinceCheckpoint() < CHECKPOINT_INTERVAL)
+	  return;
+
+	try {
+	  checkpoint();
+	} catch (IOException e) {
+	  /* os cadastros já estão no log, o próximo checkpoint tenta de novo */
+	  e.printStackTrace();
+	}
+  }
+
+  /**
+   * Com um armazenamento persistente, aumenta as colunas dele.
+   *
+   * @throws IllegalArgumentException caso o armazenamento passe do máximo.
+   * @see DataRegister#expand(int)
+   */
+  public void expand(int more) throws RegisterValidationException {
+	lock.writeLock().lock();
+	try {
+	  if (storage == null)
+		pilots.expand(more);
+	  else
+		storage.reserve(storage.capacity() + more);
+	} finally {
+	  lock.writeLock().unlock();
+	}
+  }
+
+  /**
+   * Com um armazenamento persistente não faz nada, as colunas dele não diminuem.
+   *
+   * @see DataRegister#trimToSize()
+   */
+  public void trimToSize() {
+	if (storage != null)
+	  return;
+
+	lock.writeLock().lock();
+	try {
+	  pilots.trimToSize();
+	} finally {
+	  lock.writeLock().unlock();
+	}
+  }
+
+  /**
+   * Percorre uma página da lista, na ordem de cadastro. Com um armazenamento
+   * persistente, só os pilotos da página viram objetos.
+   *
+   * @return a posição onde a próxima página começa.
+   * @see DataRegister#forEach(int, int, Iterateable)
+   * @see PilotStore#forEachView(int, int, Iterateable)
+   */
+  public int forEach(int from, int limit, Iterateable<Piloto> iterateable) {
+	lock.readLock().lock();
+	try {
+	  if (storage == null)
+		return pilots.forEach(from, limit, iterateable);
+	  return storage.forEachView(from, limit, view -> iterateable.execute(view.toPiloto()));
+	} finally {
+	  lock.readLock().unlock();
+	}
+  }
+
+  /**
+   * Percorre em ordem de CPF os pilotos da faixa [from, to].
+   *
+   * @return quantos pilotos foram visitados.
+   */
+  public int range(long from, long to, int limit, Consumer<? super Piloto> consumer) {
+	ensureIndexed();
+	lock.readLock().lock();
+	try {
+	  if (storage == null)
+		return pilotsInCpfOrder.range(from, to, limit, consumer);
+	  return rowsInCpfOrder.range(from, to, limit, row -> consumer.accept(storage.get(row)));
+	} finally {
+	  lock.readLock().unlock();
+	}
+  }
+
+  /**
+   * @return o piloto com o menor CPF maior ou igual ao passado, ou null.
+   */
+  public Piloto ceiling(long cpf) {
+	ensureIndexed();
+	lock.readLock().lock();
+	try {
+	  if (storage == null)
+		return pilotsInCpfOrder.ceiling(cpf);
+	  Integer linha = rowsInCpfOrder.ceiling(cpf);
+	  return linha == null ? null : storage.get(linha);
+	} finally {
+	  lock.readLock().unlock();
+	}
+  }
+
+  /**
+   * @return o piloto com o CPF, ou null.
+   */
+  public Piloto findByCpf(long cpf) {
+	lock.readLock().lock();
+	try {
+	  /* o armazenamento tem o próprio índice dos CPFs */
+	  return storage == null ? pilotsByCpf.get(cpf) : storage.lookup(cpf);
+	} finally {
+	  lock.readLock().unlock();
+	}
+  }
+
+  /**
+   * @return os pilotos cujo nome começa com o prefixo, no máximo 'limit'.
+   */
+  public List<Piloto> startingWith(String prefix, int limit) {
+	ensureIndexed();
+	lock.readLock().lock();
+	try {
+	  if (storage == null)
+		return pilotsByName.startingWith(prefix, limit);
+	  List<Integer> linhas = rowsByName.startingWith(prefix, limit);
+	  List<Piloto> found = new ArrayList<>(linhas.size());
+	  for (Integer linha : linhas) {
+		found.add(storage.get(linha));
+	  }
+	  return found;
+	} finally {
+	  lock.readLock().unlock();
+	}
+  }
+
+  /**
+   * Pilotos com a licença, sem diferenciar maiúsculas, direto do índice das licenças.
+   *
+   * @return no máximo 'limit' pilotos.
+   */
+  public List<Piloto> withLicense(String license, int limit) {
+	LicenseDictionary dictionary = LicenseDictionary.shared();
+	List<Piloto> found = new ArrayList<>();
+	ensureIndexed();
+	lock.readLock().lock();
+	try {
+	  for (int code = 0; code < dictionary.size() && found.size() < limit; code++) {
+		if (!license.equalsIgnoreCase(dictionary.license(code)))
+		  continue;
+		if (storage == null)
+		  pilotsByLicense.forEach(code, limit - found.size(), found::add);
+		else
+		  rowsByLicense.forEach(code, limit - found.size(), row -> found.add(storage.get(row)));
+	  }
+	} finally {
+	  lock.readLock().unlock();
+	}
+	return found;
+  }
+
+  /**
+   * Com um armazenamento persistente, cada linha vira um objeto só enquanto
+   * o filtro confere ela.
+   *
+   * @return os pilotos aceitos pelo filtro, no máximo 'limit'.
+   * @see RegisterQuery
+   */
+  public List<Piloto> query(Predicate<? super Piloto> filter, int limit) {
+	lock.readLock().lock();
+	try {
+	  if (storage == null)
+		return RegisterQuery.over(pilots).where(filter).limit(limit).list();
+	  List<Piloto> found = new ArrayList<>();
+	  for (int linha = 0; linha < storage.size() && found.size() < limit; linha++) {
+		Piloto pilot = storage.get(linha);
+		if (filter.test(pilot))
+		  found.add(pilot);
+	  }
+	  return found;
+	} finally {
+	  lock.readLock().unlock();
+	}
+  }
+
+  /**
+   * Passa cada licença com pilotos junto com a quantidade deles.
+   */
+  public void forEachLicenseCount(ObjIntConsumer<String> consumer) {
+	LicenseDictionary dictionary = LicenseDictionary.shared();
+	ensureIndexed();
+	lock.readLock().lock();
+	try {
+	  for (int code = 0; code < dictionary.size(); code++) {
+		int count = storage == null ? pilotsByLicense.count(code) : rowsByLicense.count(code);
+		if (count > 0)
+		  consumer.accept(dictionary.license(code), count);
+	  }
+	} finally {
+	  lock.readLock().unlock();
+	}
+  }
+
+  public int size() {
+	return storage == null ? pilots.size() : storage.size();
+  }
+
+  /**
+   * Com um armazenamento persistente, quantos pilotos cabem nas colunas dele.
+   */
+  public int capacity() {
+	return storage == null ? pilots.capacity() : storage.capacity();
+  }
+
+  public boolean isEmpty() {
+	return size() == 0;
+  }
+
+  /**
+   * Faz o checkpoint, fecha o log e o armazenamento e tira as métricas do JMX.
+   */
+  @Override
+  public void close() {
+	lock.writeLock().lock();
+	try {
+	  pilots.disableMetrics();
+	  if (journal != null) {
+		try {
+		  checkpoint();
+		  journal.close();
+		} catch (IOException e) {
+		  e.printStackTrace();
+		}
+	  }
+	  if (storage instanceof Closeable) {
+		try {
+		  ((Closeable) storage).close();
+		} catch (IOException e) {
+		  e.printStackTrace();
+		}
+	  }
+	} finally {
+	  lock.writeLock().unlock();
+	}
+  }
+
+  /**
+   * @throws IllegalStateException caso exista um armazenamento persistente,
+   * os pilotos ficam só nele.
+   */
+  public DataRegister<Piloto> getPilots() {
+	if (storage != null)
+	  throw new IllegalStateException("Os pilotos estão no armazenamento persistente.");
+	return pilots;
+  }
+
+  public PilotStore getStorage() {
+	return storage;
+  }
+
+  public PilotJournal getJournal() {
+	return journal;
+  }
+
+}
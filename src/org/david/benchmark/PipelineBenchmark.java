@@ -0,0 +1,126 @@
+package org.david.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.david.input.ByteInput;
+import org.david.input.Parsers;
+import org.david.models.Piloto;
+import org.david.options.DefaultOptionProperty;
+import org.david.utils.DataRegister;
+import org.david.utils.Keys;
+import org.david.utils.Options;
+import org.david.utils.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.david.utils.Options.ask;
+import static org.david.utils.Options.create;
+import static org.david.utils.Options.of;
+
+/**
+ * Mede o {@link Utils#join(DataRegister, CharSequence)} e a execução de uma
+ * opção de cadastro ({@link DefaultOptionProperty#execute(org.david.input.InputSource)})
+ * lendo um input roteirizado, em nanossegundos por piloto. As mensagens das
+ * opções são descartadas durante a medição.
+ * 
+ * gradle jmh -Pjmh=PipelineBenchmark
+ * 
+ * @author David Duarte Pinheiro
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PipelineBenchmark {
+
+  static final int PILOTS = 10_000;
+
+  private DataRegister<Piloto> pilots;
+  private DefaultOptionProperty option;
+  private byte[] script;
+  private PrintStream original;
+
+  /* 
+   * último piloto criado pela opção, para o cadastro não virar código morto.
+   */
+  private Piloto ultimo;
+
+  @Setup(Level.Trial)
+  public void setup() {
+	pilots = new DataRegister<>(PILOTS);
+	for (int i = 0; i < PILOTS; i++) {
+	  pilots.add(new Piloto(100_000_000L + i, "Piloto " + i, "LIC-" + (i % 8)));
+	}
+
+	option = create(of(
+		ask(Keys.NAME_KEY, "Nome: ", String.class),
+		ask(Keys.CPF_KEY, "CPF: ", Long.class, Parsers.CPF),
+		ask(Keys.LICENSE_KEY, "Licença: ", String.class, Parsers.LICENSE)), handlerMap -> {
+		  ultimo = Options.createPilot(handlerMap);
+		  return true;
+		}, "<Cadastrar>");
+
+	StringBuilder linhas = new StringBuilder();
+	for (int i = 0; i < PILOTS; i++) {
+	  linhas.append("Ana 529.982.247-25 abc-").append(i).append('\n');
+	}
+	script = linhas.toString().getBytes(StandardCharsets.UTF_8);
+
+	original = System.out;
+	System.setOut(new PrintStream(new OutputStream() {
+	  @Override
+	  public void write(int b) {
+	  }
+
+	  @Override
+	  public void write(byte[] b, int off, int len) {
+	  }
+	}));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+	System.setOut(original);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PILOTS)
+  public String joinString() {
+	return Utils.join(pilots, ", ");
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PILOTS)
+  public StringWriter joinAppendable() throws IOException {
+	return Utils.join(new StringWriter(), pilots, ", ");
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PILOTS)
+  public Piloto optionExecute() {
+	ByteInput input = new ByteInput(new ByteArrayInputStream(script));
+	for (int i = 0; i < PILOTS; i++) {
+	  option.execute(input);
+	}
+	return ultimo;
+  }
+}
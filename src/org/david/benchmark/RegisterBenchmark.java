@@ -0,0 +1,245 @@
+package org.david.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.david.exceptions.RegisterValidationException;
+import org.david.options.Iterateable;
+import org.david.utils.DataRegister;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compara o {@link DataRegister} com o {@link ArrayList} e o {@link ArrayDeque}
+ * em vários tamanhos. Cada benchmark mede a operação sobre a lista inteira
+ * (add, get, forEach) ou sobre {@link RegisterBenchmark#LOOKUPS} elementos
+ * espalhados por ela (remove, contains).
+ * 
+ * gradle jmh -Pjmh='RegisterBenchmark -p size=1000,100000'
+ * 
+ * @author David Duarte Pinheiro
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RegisterBenchmark {
+
+  /* 
+   * quantas buscas e remoções por invocação, essas operações são lineares.
+   */
+  static final int LOOKUPS = 200;
+
+  /**
+   * Valores e estruturas cheias, compartilhados pelas medições que só leem.
+   */
+  @State(Scope.Benchmark)
+  public static class Values {
+
+	@Param({ "1000", "10000", "100000" })
+	int size;
+
+	Integer[] values;
+
+	/* elementos espalhados pela lista, os mesmos para todas as estruturas */
+	Integer[] alvos;
+
+	DataRegister<Integer> register;
+	ArrayList<Integer> list;
+	ArrayDeque<Integer> deque;
+
+	@Setup(Level.Trial)
+	public void setup() {
+	  values = new Integer[size];
+	  for (int i = 0; i < size; i++) {
+		values[i] = i;
+	  }
+	  alvos = new Integer[Math.min(LOOKUPS, size)];
+	  for (int i = 0; i < alvos.length; i++) {
+		alvos[i] = values[(int) ((long) i * 7919 % size)];
+	  }
+
+	  register = filled(values);
+	  list = new ArrayList<>(Arrays.asList(values));
+	  deque = new ArrayDeque<>(list);
+	}
+  }
+
+  /**
+   * Estruturas cheias recriadas a cada invocação, para as medições que alteram.
+   */
+  @State(Scope.Thread)
+  public static class Fresh {
+
+	DataRegister<Integer> register;
+	ArrayList<Integer> list;
+	ArrayDeque<Integer> deque;
+
+	@Setup(Level.Invocation)
+	public void setup(Values values) {
+	  register = filled(values.values);
+	  list = new ArrayList<>(Arrays.asList(values.values));
+	  deque = new ArrayDeque<>(list);
+	}
+  }
+
+  /* add */
+
+  @Benchmark
+  public DataRegister<Integer> dataRegisterAddPreallocated(Values values) {
+	DataRegister<Integer> register = new DataRegister<>(values.size);
+	for (Integer value : values.values) {
+	  register.add(value);
+	}
+	return register;
+  }
+
+  @Benchmark
+  public DataRegister<Integer> dataRegisterDynamicallyAdd(Values values) throws RegisterValidationException {
+	DataRegister<Integer> register = new DataRegister<>();
+	for (Integer value : values.values) {
+	  register.dynamicallyAdd(value);
+	}
+	return register;
+  }
+
+  @Benchmark
+  public ArrayList<Integer> arrayListAdd(Values values) {
+	ArrayList<Integer> list = new ArrayList<>();
+	for (Integer value : values.values) {
+	  list.add(value);
+	}
+	return list;
+  }
+
+  @Benchmark
+  public ArrayDeque<Integer> arrayDequeAddLast(Values values) {
+	ArrayDeque<Integer> deque = new ArrayDeque<>();
+	for (Integer value : values.values) {
+	  deque.addLast(value);
+	}
+	return deque;
+  }
+
+  /* remove */
+
+  @Benchmark
+  public DataRegister<Integer> dataRegisterRemove(Values values, Fresh fresh) throws RegisterValidationException {
+	for (Integer alvo : values.alvos) {
+	  fresh.register.remove(alvo);
+	}
+	return fresh.register;
+  }
+
+  @Benchmark
+  public ArrayList<Integer> arrayListRemove(Values values, Fresh fresh) {
+	for (Integer alvo : values.alvos) {
+	  fresh.list.remove(alvo);
+	}
+	return fresh.list;
+  }
+
+  @Benchmark
+  public ArrayDeque<Integer> arrayDequeRemoveFirstOccurrence(Values values, Fresh fresh) {
+	for (Integer alvo : values.alvos) {
+	  fresh.deque.removeFirstOccurrence(alvo);
+	}
+	return fresh.deque;
+  }
+
+  /* contains */
+
+  @Benchmark
+  public void dataRegisterContains(Values values, Blackhole blackhole) {
+	for (Integer alvo : values.alvos) {
+	  blackhole.consume(values.register.contains(alvo));
+	}
+  }
+
+  @Benchmark
+  public void arrayListContains(Values values, Blackhole blackhole) {
+	for (Integer alvo : values.alvos) {
+	  blackhole.consume(values.list.contains(alvo));
+	}
+  }
+
+  @Benchmark
+  public void arrayDequeContains(Values values, Blackhole blackhole) {
+	for (Integer alvo : values.alvos) {
+	  blackhole.consume(values.deque.contains(alvo));
+	}
+  }
+
+  /* get */
+
+  @Benchmark
+  public long dataRegisterGet(Values values) {
+	long soma = 0;
+	for (int i = 0; i < values.size; i++) {
+	  soma += values.register.get(i);
+	}
+	return soma;
+  }
+
+  @Benchmark
+  public long arrayListGet(Values values) {
+	long soma = 0;
+	for (int i = 0; i < values.size; i++) {
+	  soma += values.list.get(i);
+	}
+	return soma;
+  }
+
+  /* forEach */
+
+  @Benchmark
+  public void dataRegisterForEach(Values values, Blackhole blackhole) {
+	values.register.forEach((Iterateable<Integer>) blackhole::consume);
+  }
+
+  @Benchmark
+  public void arrayListForEach(Values values, Blackhole blackhole) {
+	values.list.forEach(blackhole::consume);
+  }
+
+  @Benchmark
+  public void arrayDequeForEach(Values values, Blackhole blackhole) {
+	values.deque.forEach(blackhole::consume);
+  }
+
+  /* expand */
+
+  @Benchmark
+  public DataRegister<Integer> dataRegisterExpand(Values values, Fresh fresh) throws RegisterValidationException {
+	fresh.register.expand(values.size);
+	return fresh.register;
+  }
+
+  @Benchmark
+  public ArrayList<Integer> arrayListEnsureCapacity(Values values, Fresh fresh) {
+	fresh.list.ensureCapacity(2 * values.size);
+	return fresh.list;
+  }
+
+  static DataRegister<Integer> filled(Integer[] values) {
+	DataRegister<Integer> register = new DataRegister<>(values.length);
+	for (Integer value : values) {
+	  register.add(value);
+	}
+	return register;
+  }
+}
@@ -0,0 +1,168 @@
+package org.david.input;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link InputSource} que lê os bytes direto de um {@link InputStream} com um
+ * buffer próprio, ideal quando o input vem de um script (pipe ou arquivo).
+ * 
+ * Diferente do {@link java.util.Scanner}, não usa expressões regulares: as
+ * palavras são separadas pelos bytes de espaço e o {@link ByteInput#nextToken()}
+ * devolve as palavras ASCII sem criar Strings, então os números são convertidos
+ * pelos {@link Parsers} direto dos bytes.
+ * 
+ * @author David Duarte Pinheiro
+ */
+public final class ByteInput implements InputSource {
+
+  /* 
+   * tamanho padrão do buffer de leitura.
+   */
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  private final InputStream in;
+  private final byte[] buffer;
+  private int position;
+  private int limit;
+
+  /* 
+   * bytes da palavra atual, usado quando ela precisa virar String.
+   */
+  private byte[] token = new byte[64];
+
+  /* 
+   * visão da palavra atual devolvida pelo nextToken().
+   */
+  private final TokenView view = new TokenView();
+
+  public ByteInput(InputStream in, int bufferSize) {
+
+	if (in == null)
+	  throw new NullPointerException("InputStream nulo.");
+
+	this.in = in;
+	this.buffer = new byte[bufferSize];
+  }
+
+  public ByteInput(InputStream in) {
+	this(in, BUFFER_SIZE);
+  }
+
+  @Override
+  public String next() {
+	int tamanho = readToken();
+	return new String(token, 0, tamanho, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Palavras só com caracteres ASCII são devolvidas sem cópia, numa visão
+   * sobre o vetor 'token'; as outras viram String.
+   */
+  @Override
+  public CharSequence nextToken() {
+	int tamanho = readToken();
+
+	for (int i = 0; i < tamanho; i++) {
+	  if (token[i] < 0)
+		return new String(token, 0, tamanho, StandardCharsets.UTF_8);
+	}
+	view.length = tamanho;
+	return view;
+  }
+
+  @Override
+  public boolean hasNext() {
+	skipSpaces();
+	return fill();
+  }
+
+  /**
+   * Copia a próxima palavra para o vetor 'token'.
+   * 
+   * @return o tamanho da palavra.
+   */
+  private int readToken() {
+	skipSpaces();
+
+	if (!fill())
+	  throw new NoSuchElementException();
+
+	int tamanho = 0;
+	while (fill() && !isSpace(buffer[position])) {
+	  if (tamanho == token.length) {
+		byte[] maior = new byte[token.length << 1];
+		System.arraycopy(token, 0, maior, 0, tamanho);
+		token = maior;
+	  }
+	  token[tamanho++] = buffer[position++];
+	}
+	return tamanho;
+  }
+
+  private void skipSpaces() {
+	while (fill() && isSpace(buffer[position])) {
+	  position++;
+	}
+  }
+
+  /**
+   * Garante que existe algum byte no buffer, lendo mais caso precise.
+   * 
+   * @return falso caso o input tenha acabado.
+   */
+  private boolean fill() {
+	if (position < limit)
+	  return true;
+
+	try {
+	  int lidos;
+	  do {
+		lidos = in.read(buffer, 0, buffer.length);
+	  } while (lidos == 0);
+
+	  position = 0;
+	  limit = Math.max(lidos, 0);
+	  return lidos > 0;
+	} catch (IOException e) {
+	  throw new UncheckedIOException(e);
+	}
+  }
+
+  private static boolean isSpace(int b) {
+	return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+  }
+
+  /**
+   * Palavra ASCII atual, sem cópia.
+   */
+  private final class TokenView implements CharSequence {
+
+	private int length;
+
+	@Override
+	public int length() {
+	  return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+	  if (index < 0 || index >= length)
+		throw new IndexOutOfBoundsException("Posição inválida: " + index);
+	  return (char) token[index];
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+	  return toString().substring(start, end);
+	}
+
+	@Override
+	public String toString() {
+	  return new String(token, 0, length, StandardCharsets.US_ASCII);
+	}
+  }
+}
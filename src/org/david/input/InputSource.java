@@ -0,0 +1,38 @@
+package org.david.input;
+
+import java.util.NoSuchElementException;
+
+/**
+ * De onde as opções leem o input do usuário, separado em palavras (tokens)
+ * por espaços e quebras de linha.
+ * 
+ * @author David Duarte Pinheiro
+ * @see ScannerInput
+ * @see ByteInput
+ */
+public interface InputSource {
+
+  /**
+   * @return a próxima palavra.
+   * @throws NoSuchElementException caso o input tenha acabado.
+   */
+  String next();
+
+  /**
+   * Igual ao {@link InputSource#next()}, mas a implementação pode devolver
+   * um buffer reutilizado, válido somente até a próxima leitura.
+   * 
+   * @return a próxima palavra.
+   * @throws NoSuchElementException caso o input tenha acabado.
+   * @see ValueParser
+   */
+  default CharSequence nextToken() {
+	return next();
+  }
+
+  /**
+   * @return se ainda existe alguma palavra para ler.
+   */
+  boolean hasNext();
+
+}
@@ -0,0 +1,323 @@
+package org.david.input;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+import org.david.utils.Cpf;
+
+/**
+ * Registro dos {@link ValueParser} por tipo. Cada {@link org.david.options.Property}
+ * resolve o seu uma única vez, quando a opção é criada, e a leitura de cada valor
+ * vira uma chamada direta.
+ * 
+ * Novos tipos podem ser registrados com {@link Parsers#register(Class, ValueParser)}.
+ * Os conversores que não são identificados por uma classe (ex.: {@link Parsers#CPF})
+ * ficam disponíveis como constantes.
+ * 
+ * Os números são convertidos direto dos caracteres do token, então com a visão
+ * reutilizada do {@link ByteInput#nextToken()} nenhuma String é criada
+ * (exceto para decimais com expoente ou com muitos dígitos).
+ * 
+ * @author David Duarte Pinheiro
+ */
+public final class Parsers {
+
+  /* 
+   * tamanho máximo de uma licença, o mesmo que cabe no armazenamento.
+   */
+  public static final int LICENSE_MAX_LENGTH = 15;
+
+  /* 
+   * potências de 10 representadas exatamente por um double e por um float.
+   */
+  private static final double[] DOUBLE_POWERS_OF_TEN = {
+	  1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+	  1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+  private static final float[] FLOAT_POWERS_OF_TEN = {
+	  1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+  };
+
+  /* 
+   * dígitos que sempre cabem exatamente na mantissa de um double (2^53)
+   * e de um float (2^24).
+   */
+  private static final int DOUBLE_EXACT_DIGITS = 15;
+  private static final int FLOAT_EXACT_DIGITS = 7;
+
+  public static final ValueParser<String> STRING = token -> token.toString();
+
+  public static final ValueParser<Integer> INTEGER = token ->
+	  parseInteger(token, Integer.MIN_VALUE, Integer.MAX_VALUE, valor -> (int) valor);
+
+  public static final ValueParser<Long> LONG = token ->
+	  parseInteger(token, Long.MIN_VALUE, Long.MAX_VALUE, valor -> valor);
+
+  public static final ValueParser<Short> SHORT = token ->
+	  parseInteger(token, Short.MIN_VALUE, Short.MAX_VALUE, valor -> (short) valor);
+
+  public static final ValueParser<Byte> BYTE = token ->
+	  parseInteger(token, Byte.MIN_VALUE, Byte.MAX_VALUE, valor -> (byte) valor);
+
+  public static final ValueParser<Double> DOUBLE = token -> {
+	if (!isDecimal(token))
+	  return null;
+
+	long mantissa = exactMantissa(token, DOUBLE_EXACT_DIGITS);
+	if (mantissa < 0)
+	  return Double.parseDouble(token.toString());
+
+	double valor = mantissa / DOUBLE_POWERS_OF_TEN[decimalPlaces(token)];
+	return token.charAt(0) == '-' ? -valor : valor;
+  };
+
+  public static final ValueParser<Float> FLOAT = token -> {
+	if (!isDecimal(token))
+	  return null;
+
+	long mantissa = exactMantissa(token, FLOAT_EXACT_DIGITS);
+	if (mantissa < 0)
+	  return Float.parseFloat(token.toString());
+
+	float valor = mantissa / FLOAT_POWERS_OF_TEN[decimalPlaces(token)];
+	return token.charAt(0) == '-' ? -valor : valor;
+  };
+
+  public static final ValueParser<Boolean> BOOLEAN = token -> Boolean.parseBoolean(token.toString());
+
+  /**
+   * CPF com os dígitos verificadores válidos, aceitando pontos e traço.
+   */
+  public static final ValueParser<Long> CPF = token -> {
+	long cpf = Cpf.parse(token);
+	return Cpf.isValid(cpf) ? cpf : null;
+  };
+
+  /**
+   * Número de CPF sem conferir os dígitos verificadores, ex.: os limites de uma faixa.
+   */
+  public static final ValueParser<Long> CPF_NUMBER = token -> {
+	long cpf = Cpf.parse(token);
+	return cpf == Cpf.INVALID ? null : cpf;
+  };
+
+  /**
+   * Código de licença: letras, números e traço, até {@link Parsers#LICENSE_MAX_LENGTH}
+   * caracteres, convertido para maiúsculo.
+   */
+  public static final ValueParser<String> LICENSE = token -> {
+	if (token.length() == 0 || token.length() > LICENSE_MAX_LENGTH)
+	  return null;
+
+	for (int i = 0; i < token.length(); i++) {
+	  char c = token.charAt(i);
+	  if (!(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9') && c != '-')
+		return null;
+	}
+	return token.toString().toUpperCase();
+  };
+
+  /**
+   * Data no formato dd/MM/yyyy.
+   */
+  public static final ValueParser<LocalDate> DATE = Parsers::parseDate;
+
+  private static final Map<Class<?>, ValueParser<?>> REGISTRY = new HashMap<>();
+
+  static {
+	register(String.class, STRING);
+	register(Integer.class, INTEGER);
+	register(Long.class, LONG);
+	register(Short.class, SHORT);
+	register(Byte.class, BYTE);
+	register(Double.class, DOUBLE);
+	register(Float.class, FLOAT);
+	register(Boolean.class, BOOLEAN);
+	register(LocalDate.class, DATE);
+  }
+
+  /**
+   * Registra o conversor de um tipo, substituindo o anterior.
+   * 
+   * @throws NullPointerException caso o tipo ou o conversor sejam nulos.
+   */
+  public static <T> void register(Class<T> type, ValueParser<T> parser) {
+
+	if (type == null || parser == null)
+	  throw new NullPointerException("Tipo ou conversor nulo.");
+
+	synchronized (REGISTRY) {
+	  REGISTRY.put(type, parser);
+	}
+  }
+
+  /**
+   * @return o conversor do tipo, ou o {@link Parsers#STRING} para os tipos
+   * sem conversor.
+   */
+  public static ValueParser<?> forType(Class<?> type) {
+	synchronized (REGISTRY) {
+	  ValueParser<?> parser = REGISTRY.get(type);
+	  return parser != null ? parser : STRING;
+	}
+  }
+
+  /**
+   * Converte o número inteiro, conferindo os limites.
+   * 
+   * @param box converte o valor, já dentro dos limites, para o tipo do conversor.
+   * @return o valor, ou null caso não seja um número inteiro dentro dos limites.
+   */
+  private static <T> T parseInteger(CharSequence token, long min, long max, LongFunction<T> box) {
+	int tamanho = token.length();
+	int i = 0;
+	boolean negativo = false;
+
+	if (tamanho > 0 && (token.charAt(0) == '-' || token.charAt(0) == '+')) {
+	  negativo = token.charAt(0) == '-';
+	  i++;
+	}
+
+	if (i == tamanho)
+	  return null;
+
+	/* acumulado negativo, para caber o Long.MIN_VALUE */
+	long valor = 0;
+	for (; i < tamanho; i++) {
+	  char c = token.charAt(i);
+	  if (!isAsciiDigit(c) || valor < (Long.MIN_VALUE + (c - '0')) / 10)
+		return null;
+	  valor = valor * 10 - (c - '0');
+	}
+
+	if (!negativo) {
+	  if (valor == Long.MIN_VALUE)
+		return null;
+	  valor = -valor;
+	}
+
+	return valor < min || valor > max ? null : box.apply(valor);
+  }
+
+  /**
+   * Confere o formato [sinal] dígitos [. dígitos] [e [sinal] dígitos] antes de
+   * converter, assim o {@link Double#parseDouble(String)} nunca falha.
+   */
+  private static boolean isDecimal(CharSequence token) {
+	int tamanho = token.length();
+	int i = 0;
+
+	if (i < tamanho && (token.charAt(i) == '-' || token.charAt(i) == '+'))
+	  i++;
+
+	int digitos = 0;
+	while (i < tamanho && isAsciiDigit(token.charAt(i))) {
+	  i++;
+	  digitos++;
+	}
+	if (i < tamanho && token.charAt(i) == '.') {
+	  i++;
+	  while (i < tamanho && isAsciiDigit(token.charAt(i))) {
+		i++;
+		digitos++;
+	  }
+	}
+	if (digitos == 0)
+	  return false;
+
+	if (i < tamanho && (token.charAt(i) == 'e' || token.charAt(i) == 'E')) {
+	  i++;
+	  if (i < tamanho && (token.charAt(i) == '-' || token.charAt(i) == '+'))
+		i++;
+	  int expoente = 0;
+	  while (i < tamanho && isAsciiDigit(token.charAt(i))) {
+		i++;
+		expoente++;
+	  }
+	  if (expoente == 0)
+		return false;
+	}
+	return i == tamanho;
+  }
+
+  /**
+   * Dígitos do token já conferido pelo {@link Parsers#isDecimal(CharSequence)},
+   * sem o sinal e o ponto, ex.: 12.50 dá 1250.
+   * 
+   * @return a mantissa, ou -1 caso o token tenha expoente ou mais que
+   * 'maxDigits' dígitos, quando a divisão pela potência de 10 não é exata.
+   */
+  private static long exactMantissa(CharSequence token, int maxDigits) {
+	long mantissa = 0;
+	int digitos = 0;
+	for (int i = 0; i < token.length(); i++) {
+	  char c = token.charAt(i);
+	  if (isAsciiDigit(c)) {
+		if (++digitos > maxDigits)
+		  return -1;
+		mantissa = mantissa * 10 + (c - '0');
+	  } else if (c == 'e' || c == 'E') {
+		return -1;
+	  }
+	}
+	return mantissa;
+  }
+
+  /**
+   * @return quantos dígitos o token tem depois do ponto.
+   */
+  private static int decimalPlaces(CharSequence token) {
+	for (int i = 0; i < token.length(); i++) {
+	  if (token.charAt(i) == '.')
+		return token.length() - i - 1;
+	}
+	return 0;
+  }
+
+  /**
+   * Só '0' a '9': o {@link Character#isDigit(char)} aceita dígitos de outras
+   * escritas (ex.: árabes), que o {@link Double#parseDouble(String)} recusa.
+   */
+  private static boolean isAsciiDigit(char c) {
+	return c >= '0' && c <= '9';
+  }
+
+  private static LocalDate parseDate(CharSequence token) {
+	if (token.length() != 10 || token.charAt(2) != '/' || token.charAt(5) != '/')
+	  return null;
+
+	int dia = digits(token, 0, 2);
+	int mes = digits(token, 3, 5);
+	int ano = digits(token, 6, 10);
+
+	if (dia < 1 || mes < 1 || mes > 12 || ano < 1)
+	  return null;
+
+	int diasNoMes = mes == 2 ? (isLeap(ano) ? 29 : 28) : (mes == 4 || mes == 6 || mes == 9 || mes == 11) ? 30 : 31;
+
+	if (dia > diasNoMes)
+	  return null;
+
+	return LocalDate.of(ano, mes, dia);
+  }
+
+  /**
+   * @return o número formado pelos dígitos ou -1 caso algum não seja dígito.
+   */
+  private static int digits(CharSequence token, int from, int to) {
+	int valor = 0;
+	for (int i = from; i < to; i++) {
+	  char c = token.charAt(i);
+	  if (c < '0' || c > '9')
+		return -1;
+	  valor = valor * 10 + (c - '0');
+	}
+	return valor;
+  }
+
+  private static boolean isLeap(int ano) {
+	return (ano % 4 == 0 && ano % 100 != 0) || ano % 400 == 0;
+  }
+}
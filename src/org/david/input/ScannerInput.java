@@ -0,0 +1,35 @@
+package org.david.input;
+
+import java.util.Scanner;
+
+/**
+ * {@link InputSource} que usa o {@link Scanner}, ideal para o uso interativo.
+ * 
+ * @author David Duarte Pinheiro
+ */
+public final class ScannerInput implements InputSource {
+
+  private final Scanner scanner;
+
+  public ScannerInput(Scanner scanner) {
+
+	if (scanner == null)
+	  throw new NullPointerException("Scanner nulo.");
+
+	this.scanner = scanner;
+  }
+
+  @Override
+  public String next() {
+	return scanner.next();
+  }
+
+  @Override
+  public boolean hasNext() {
+	return scanner.hasNext();
+  }
+
+  public Scanner getScanner() {
+	return scanner;
+  }
+}
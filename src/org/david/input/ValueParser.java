@@ -0,0 +1,21 @@
+package org.david.input;
+
+/**
+ * Converte uma palavra do input para o tipo requerido por uma
+ * {@link org.david.options.Property}.
+ * 
+ * A conversão não lança exceções: um valor inválido é informado com null,
+ * e quem leu só pede uma nova palavra.
+ * 
+ * @author David Duarte Pinheiro
+ * @see Parsers
+ */
+public interface ValueParser<T> {
+
+  /**
+   * @param token a palavra lida, válida só até a próxima leitura do input.
+   * @return o valor convertido ou null caso a palavra seja inválida.
+   */
+  T parse(CharSequence token);
+
+}
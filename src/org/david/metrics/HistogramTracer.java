@@ -0,0 +1,135 @@
+package org.david.metrics;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.david.options.Option;
+import org.david.options.OptionTracer;
+
+/**
+ * {@link OptionTracer} que guarda um {@link LatencyHistogram} de espera pelo
+ * input e outro de execução para cada opção, agrupados pela descrição.
+ * 
+ * Depois que a opção já tem os histogramas, registrar um tempo não aloca memória.
+ * 
+ * @author David Duarte Pinheiro
+ */
+public final class HistogramTracer implements OptionTracer {
+
+  /* 
+   * descrição usada pelas opções sem descrição.
+   */
+  private static final String UNNAMED = "<sem descrição>";
+
+  private final Map<String, Timings> timings = new ConcurrentHashMap<>();
+
+  private ScheduledExecutorService dumper;
+
+  @Override
+  public void inputWaited(Option<?> option, long nanos) {
+	timingsOf(option).input.record(nanos);
+  }
+
+  @Override
+  public void handled(Option<?> option, long nanos) {
+	timingsOf(option).handler.record(nanos);
+  }
+
+  /**
+   * @return o histograma de espera pelo input da opção, ou null caso ela nunca tenha sido executada.
+   */
+  public LatencyHistogram inputWait(String description) {
+	Timings t = timings.get(description);
+	return t == null ? null : t.input;
+  }
+
+  /**
+   * @return o histograma de execução da opção, ou null caso ela nunca tenha sido executada.
+   */
+  public LatencyHistogram handler(String description) {
+	Timings t = timings.get(description);
+	return t == null ? null : t.handler;
+  }
+
+  /**
+   * Escreve um resumo de cada opção: quantidade, média, p50, p99 e máximo.
+   */
+  public void dump(PrintStream out) {
+	StringBuilder resumo = new StringBuilder(256);
+	resumo.append("**** tempos por opção (µs) ****\n");
+	if (timings.isEmpty())
+	  resumo.append("Nenhuma opção executada.\n");
+
+	timings.forEach((descricao, t) -> {
+	  resumo.append(descricao).append('\n');
+	  line(resumo, "  input  ", t.input);
+	  line(resumo, "  handler", t.handler);
+	});
+	out.print(resumo);
+	out.flush();
+  }
+
+  /**
+   * Escreve o resumo periodicamente numa thread daemon.
+   * 
+   * @throws IllegalStateException caso já esteja escrevendo.
+   */
+  public synchronized void startPeriodicDump(long period, TimeUnit unit, PrintStream out) {
+
+	if (dumper != null)
+	  throw new IllegalStateException("O resumo periódico já foi iniciado.");
+
+	dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+	  Thread thread = new Thread(task, "option-stats");
+	  thread.setDaemon(true);
+	  return thread;
+	});
+	dumper.scheduleAtFixedRate(() -> dump(out), period, period, unit);
+  }
+
+  /**
+   * Para o resumo periódico, caso exista.
+   */
+  public synchronized void stopPeriodicDump() {
+	if (dumper != null) {
+	  dumper.shutdownNow();
+	  dumper = null;
+	}
+  }
+
+  /**
+   * Zera todos os histogramas.
+   */
+  public void reset() {
+	timings.clear();
+  }
+
+  private Timings timingsOf(Option<?> option) {
+	String descricao = option.getDescription() != null ? option.getDescription() : UNNAMED;
+	Timings t = timings.get(descricao);
+	return t != null ? t : timings.computeIfAbsent(descricao, d -> new Timings());
+  }
+
+  private static void line(StringBuilder resumo, String nome, LatencyHistogram histogram) {
+	resumo.append(nome)
+		.append(" n=").append(histogram.count())
+		.append(" média=").append(micros((long) histogram.mean()))
+		.append(" p50=").append(micros(histogram.percentile(50)))
+		.append(" p99=").append(micros(histogram.percentile(99)))
+		.append(" máx=").append(micros(histogram.max()))
+		.append('\n');
+  }
+
+  private static String micros(long nanos) {
+	return String.format("%.1f", nanos / 1_000.0);
+  }
+
+  private static final class Timings {
+	final LatencyHistogram input = new LatencyHistogram();
+	final LatencyHistogram handler = new LatencyHistogram();
+  }
+}
@@ -0,0 +1,129 @@
+package org.david.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latências em nanossegundos com buckets log-lineares: cada
+ * potência de 2 é dividida em {@link LatencyHistogram#SUB_BUCKETS} partes
+ * iguais, então o erro relativo de um percentil é de no máximo 12,5%.
+ * 
+ * Os buckets são fixos e criados no construtor, o registro só incrementa
+ * contadores atômicos e não aloca memória.
+ * 
+ * @author David Duarte Pinheiro
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+
+  /* 
+   * buckets lineares por potência de 2.
+   */
+  public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong total = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Registra uma latência. Valores negativos contam como zero.
+   */
+  public void record(long nanos) {
+	long valor = Math.max(nanos, 0);
+	counts.incrementAndGet(bucketOf(valor));
+	total.incrementAndGet();
+	sum.addAndGet(valor);
+
+	long atual;
+	while (valor > (atual = max.get()) && !max.compareAndSet(atual, valor)) {
+	}
+  }
+
+  /**
+   * @return quantas latências foram registradas.
+   */
+  public long count() {
+	return total.get();
+  }
+
+  /**
+   * @return a média em nanossegundos.
+   */
+  public double mean() {
+	long quantidade = total.get();
+	return quantidade == 0 ? 0 : (double) sum.get() / quantidade;
+  }
+
+  /**
+   * @return a maior latência registrada, em nanossegundos.
+   */
+  public long max() {
+	return max.get();
+  }
+
+  /**
+   * @param percentile de 0 a 100.
+   * @return o limite superior do bucket que contém o percentil, em nanossegundos.
+   * @throws IllegalArgumentException caso o percentil esteja fora de 0 a 100.
+   */
+  public long percentile(double percentile) {
+
+	if (percentile < 0 || percentile > 100)
+	  throw new IllegalArgumentException("Percentil fora de 0 a 100.");
+
+	long quantidade = total.get();
+	if (quantidade == 0)
+	  return 0;
+
+	long alvo = Math.max(1, (long) Math.ceil(quantidade * percentile / 100));
+	long acumulado = 0;
+	for (int i = 0; i < BUCKETS; i++) {
+	  acumulado += counts.get(i);
+	  if (acumulado >= alvo)
+		return Math.min(upperBound(i), max.get());
+	}
+	return max.get();
+  }
+
+  /**
+   * Zera o histograma.
+   */
+  public void reset() {
+	for (int i = 0; i < BUCKETS; i++) {
+	  counts.set(i, 0);
+	}
+	total.set(0);
+	sum.set(0);
+	max.set(0);
+  }
+
+  /**
+   * Os valores menores que {@link LatencyHistogram#SUB_BUCKETS} têm um bucket
+   * cada, os outros caem na potência de 2 deles e na parte linear dentro dela.
+   */
+  static int bucketOf(long value) {
+	if (value < SUB_BUCKETS)
+	  return (int) value;
+
+	int expoente = 63 - Long.numberOfLeadingZeros(value);
+	int parte = (int) (value >>> (expoente - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+	return (expoente - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + parte;
+  }
+
+  /**
+   * @return o maior valor que cai no bucket.
+   */
+  static long upperBound(int bucket) {
+	if (bucket < SUB_BUCKETS)
+	  return bucket;
+
+	int expoente = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+	long parte = bucket % SUB_BUCKETS;
+	long inicio = (1L << expoente) + (parte << (expoente - SUB_BUCKET_BITS));
+	return inicio + (1L << (expoente - SUB_BUCKET_BITS)) - 1;
+  }
+}
@@ -0,0 +1,271 @@
+package org.david.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Métricas de um {@link org.david.utils.DataRegister}, publicadas via JMX como
+ * org.david:type=DataRegister,name=(nome),id=(número).
+ * 
+ * Só são criadas quando a propriedade de sistema {@link RegisterMetrics#PROPERTY}
+ * está ativa (-Dprova2.metrics=true). Desativadas, a lista só confere um campo
+ * nulo a cada operação.
+ * 
+ * Os contadores usam {@link LongAdder}, então várias threads podem registrar
+ * ao mesmo tempo sem disputar a mesma variável.
+ * 
+ * @author David Duarte Pinheiro
+ */
+public final class RegisterMetrics implements RegisterMetricsMBean {
+
+  public static final String PROPERTY = "prova2.metrics";
+
+  /**
+   * Se as métricas estão ativas nessa execução.
+   */
+  public static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+  /* 
+   * tamanho estimado de uma referência (compressed oops).
+   */
+  public static final int REFERENCE_BYTES = 4;
+
+  private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+  private final String name;
+  private final IntSupplier size;
+  private final IntSupplier capacity;
+
+  /**
+   * Nome do MBean, null enquanto não estiver registrado.
+   */
+  private volatile ObjectName objectName;
+
+  private final LongAdder adds = new LongAdder();
+  private final LongAdder removes = new LongAdder();
+  private final LongAdder removeCalls = new LongAdder();
+  private final LongAdder removeScanned = new LongAdder();
+  private final LongAdder contains = new LongAdder();
+  private final LongAdder containsScanned = new LongAdder();
+  private final LongAdder gets = new LongAdder();
+  private final LongAdder findFirsts = new LongAdder();
+  private final LongAdder findFirstScanned = new LongAdder();
+  private final LongAdder expands = new LongAdder();
+  private final LongAdder bytesCopied = new LongAdder();
+  private final LongAdder revalidations = new LongAdder();
+  private final LongAdder revalidateNanos = new LongAdder();
+
+  public RegisterMetrics(String name, IntSupplier size, IntSupplier capacity) {
+
+	if (name == null || size == null || capacity == null)
+	  throw new NullPointerException("Nome, tamanho ou capacidade nulos.");
+
+	this.name = name;
+	this.size = size;
+	this.capacity = capacity;
+  }
+
+  /**
+   * Cria as métricas e registra o MBean, caso as métricas estejam ativas.
+   * 
+   * @return as métricas ou null caso estejam desativadas.
+   */
+  public static RegisterMetrics publish(String name, IntSupplier size, IntSupplier capacity) {
+	if (!ENABLED)
+	  return null;
+
+	RegisterMetrics metrics = new RegisterMetrics(name, size, capacity);
+	try {
+	  ObjectName objectName = new ObjectName("org.david:type=DataRegister,name=" + ObjectName.quote(name)
+		  + ",id=" + SEQUENCE.incrementAndGet());
+	  ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+	  metrics.objectName = objectName;
+	} catch (JMException e) {
+	  /* as métricas continuam sendo contadas, só não ficam visíveis */
+	  e.printStackTrace();
+	}
+	return metrics;
+  }
+
+  /**
+   * Tira o MBean do servidor JMX. O MBean segura a lista pelos suppliers do
+   * tamanho e da capacidade, então quem publica precisa chamar isso quando a
+   * lista deixa de ser usada.
+   */
+  public void unpublish() {
+	ObjectName registrado = objectName;
+	if (registrado == null)
+	  return;
+
+	objectName = null;
+	try {
+	  ManagementFactory.getPlatformMBeanServer().unregisterMBean(registrado);
+	} catch (JMException e) {
+	  e.printStackTrace();
+	}
+  }
+
+  /**
+   * @return se o MBean está registrado no servidor JMX.
+   */
+  public boolean isPublished() {
+	return objectName != null;
+  }
+
+  public void added(int elements) {
+	adds.add(elements);
+  }
+
+  /**
+   * Uma chamada de remoção (remove ou removeIf), mesmo que não tenha achado nada.
+   *
+   * @param elements quantos elementos foram removidos.
+   * @param scanned quantos elementos foram percorridos.
+   */
+  public void removed(int elements, int scanned) {
+	removeCalls.increment();
+	removes.add(elements);
+	removeScanned.add(scanned);
+  }
+
+  public void searched(int scanned) {
+	contains.increment();
+	containsScanned.add(scanned);
+  }
+
+  public void read() {
+	gets.increment();
+  }
+
+  public void foundFirst(int scanned) {
+	findFirsts.increment();
+	findFirstScanned.add(scanned);
+  }
+
+  public void expanded(int referencesCopied) {
+	expands.increment();
+	copied(referencesCopied);
+  }
+
+  public void copied(int references) {
+	bytesCopied.add((long) references * REFERENCE_BYTES);
+  }
+
+  public void revalidated(long nanos) {
+	revalidations.increment();
+	revalidateNanos.add(nanos);
+  }
+
+  @Override
+  public String getName() {
+	return name;
+  }
+
+  @Override
+  public long getAdds() {
+	return adds.sum();
+  }
+
+  @Override
+  public long getRemoves() {
+	return removes.sum();
+  }
+
+  @Override
+  public long getRemoveCalls() {
+	return removeCalls.sum();
+  }
+
+  @Override
+  public long getContains() {
+	return contains.sum();
+  }
+
+  @Override
+  public long getGets() {
+	return gets.sum();
+  }
+
+  @Override
+  public long getFindFirstCalls() {
+	return findFirsts.sum();
+  }
+
+  @Override
+  public long getExpands() {
+	return expands.sum();
+  }
+
+  @Override
+  public long getBytesCopied() {
+	return bytesCopied.sum();
+  }
+
+  @Override
+  public double getAverageContainsScan() {
+	return average(containsScanned, contains);
+  }
+
+  @Override
+  public double getAverageRemoveScan() {
+	return average(removeScanned, removeCalls);
+  }
+
+  @Override
+  public double getAverageFindFirstScan() {
+	return average(findFirstScanned, findFirsts);
+  }
+
+  @Override
+  public long getRevalidations() {
+	return revalidations.sum();
+  }
+
+  @Override
+  public long getRevalidateNanos() {
+	return revalidateNanos.sum();
+  }
+
+  @Override
+  public int getSize() {
+	return size.getAsInt();
+  }
+
+  @Override
+  public int getCapacity() {
+	return capacity.getAsInt();
+  }
+
+  @Override
+  public double getFillRatio() {
+	int capacidade = getCapacity();
+	return capacidade == 0 ? 0 : (double) getSize() / capacidade;
+  }
+
+  @Override
+  public void reset() {
+	adds.reset();
+	removes.reset();
+	removeCalls.reset();
+	removeScanned.reset();
+	contains.reset();
+	containsScanned.reset();
+	gets.reset();
+	findFirsts.reset();
+	findFirstScanned.reset();
+	expands.reset();
+	bytesCopied.reset();
+	revalidations.reset();
+	revalidateNanos.reset();
+  }
+
+  private static double average(LongAdder total, LongAdder operations) {
+	long quantidade = operations.sum();
+	return quantidade == 0 ? 0 : (double) total.sum() / quantidade;
+  }
+}
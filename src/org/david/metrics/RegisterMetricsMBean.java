@@ -0,0 +1,78 @@
+package org.david.metrics;
+
+/**
+ * Interface JMX das métricas de um {@link org.david.utils.DataRegister}.
+ * 
+ * @author David Duarte Pinheiro
+ * @see RegisterMetrics
+ */
+public interface RegisterMetricsMBean {
+
+  String getName();
+
+  long getAdds();
+
+  /**
+   * @return quantos elementos foram removidos.
+   */
+  long getRemoves();
+
+  /**
+   * @return quantas chamadas de remoção (remove ou removeIf) foram feitas.
+   */
+  long getRemoveCalls();
+
+  long getContains();
+
+  long getGets();
+
+  long getFindFirstCalls();
+
+  /**
+   * @return quantas vezes a lista foi expandida.
+   */
+  long getExpands();
+
+  /**
+   * @return bytes de referências copiados por expansões e cópias do modo snapshot.
+   */
+  long getBytesCopied();
+
+  /**
+   * @return média de elementos percorridos por contains.
+   */
+  double getAverageContainsScan();
+
+  /**
+   * @return média de elementos percorridos por chamada de remoção, contando
+   * as que não acharam nada.
+   */
+  double getAverageRemoveScan();
+
+  /**
+   * @return média de posições percorridas pelo findFirst.
+   */
+  double getAverageFindFirstScan();
+
+  long getRevalidations();
+
+  /**
+   * @return tempo total gasto no revalidate, em nanossegundos.
+   */
+  long getRevalidateNanos();
+
+  int getSize();
+
+  int getCapacity();
+
+  /**
+   * @return tamanho dividido pela capacidade, de 0 a 1.
+   */
+  double getFillRatio();
+
+  /**
+   * Zera todos os contadores.
+   */
+  void reset();
+
+}
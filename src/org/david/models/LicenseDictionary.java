@@ -0,0 +1,122 @@
+package org.david.models;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dicionário das licenças: cada texto de licença diferente recebe um código
+ * int, e o {@link Piloto} guarda só o código. Como existem poucas licenças,
+ * milhões de pilotos compartilham o mesmo punhado de Strings.
+ * 
+ * Buscar um código já existente não usa lock, só a criação de um código
+ * novo é sincronizada. Os códigos nunca mudam nem são reaproveitados, então o
+ * dicionário aceita no máximo {@link LicenseDictionary#MAX_LICENSES} licenças
+ * diferentes: ele é global, e o CSV, o log e os clientes do servidor
+ * cadastram licenças nele.
+ * 
+ * @author David Duarte Pinheiro
+ */
+public final class LicenseDictionary {
+
+  /* 
+   * código de quem não tem licença.
+   */
+  public static final int NONE = -1;
+
+  /**
+   * Quantas licenças diferentes o dicionário aceita.
+   */
+  public static final int MAX_LICENSES = 4096;
+
+  private static final LicenseDictionary SHARED = new LicenseDictionary();
+
+  private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+
+  /* 
+   * licença de cada código, trocado por um vetor maior quando enche.
+   */
+  private volatile String[] licenses = new String[8];
+  private volatile int count;
+
+  /**
+   * @return o dicionário usado pelos pilotos.
+   */
+  public static LicenseDictionary shared() {
+	return SHARED;
+  }
+
+  /**
+   * @return o código da licença, criando um caso ela ainda não exista,
+   * ou {@link LicenseDictionary#NONE} caso seja nula.
+   * @throws IllegalArgumentException caso a licença seja nova e o dicionário
+   * já tenha {@link LicenseDictionary#MAX_LICENSES} licenças.
+   */
+  public int intern(String license) {
+	if (license == null)
+	  return NONE;
+
+	Integer code = codes.get(license);
+	if (code != null)
+	  return code;
+
+	synchronized (this) {
+	  code = codes.get(license);
+	  if (code != null)
+		return code;
+
+	  if (count == MAX_LICENSES)
+		throw new IllegalArgumentException("Limite de " + MAX_LICENSES + " licenças diferentes atingido.");
+
+	  if (count == licenses.length)
+		licenses = Arrays.copyOf(licenses, count << 1);
+
+	  /* a licença e o tamanho são publicados antes do código ficar visível */
+	  int novo = count;
+	  licenses[novo] = license;
+	  count = novo + 1;
+	  codes.put(license, novo);
+	  return novo;
+	}
+  }
+
+  /**
+   * @return o código da licença, ou {@link LicenseDictionary#NONE} caso ela não exista.
+   * Diferente do {@link LicenseDictionary#intern(String)}, nunca cria um código.
+   */
+  public int codeOf(String license) {
+	if (license == null)
+	  return NONE;
+
+	Integer code = codes.get(license);
+	return code != null ? code : NONE;
+  }
+
+  /**
+   * @return se o código é {@link LicenseDictionary#NONE} ou já foi criado.
+   */
+  public boolean contains(int code) {
+	return code == NONE || (code >= 0 && code < count);
+  }
+
+  /**
+   * @return o texto da licença ou null para {@link LicenseDictionary#NONE}.
+   * @throws IndexOutOfBoundsException caso o código não exista.
+   */
+  public String license(int code) {
+	if (code == NONE)
+	  return null;
+
+	if (code < 0 || code >= count)
+	  throw new IndexOutOfBoundsException("Código de licença inexistente: " + code);
+
+	return licenses[code];
+  }
+
+  /**
+   * @return quantas licenças diferentes existem, os códigos vão de 0 a size() - 1.
+   */
+  public int size() {
+	return count;
+  }
+}
@@ -1,27 +1,76 @@
 package org.david.models;
 
+import org.david.utils.Cpf;
+
 /**
  * Classe que define os atributos fundamentais do modelo
  * @author David Duarte Pinheiro
  */
 public abstract class Pessoa {
 
+  /* 
+   * CPF numérico, ou {@link Cpf#INVALID} caso o texto não seja um número.
+   */
+  private final long cpfKey;
+
+  /* 
+   * só é guardado quando o CPF não está no formato de 11 dígitos,
+   * nos outros casos o texto é gerado a partir do 'cpfKey'.
+   */
   private final String cpf;
   private final String name;
 
   public Pessoa(String cpf, String name) {
-	this.cpf = cpf;
+	this.cpfKey = Cpf.parse(cpf);
+	this.cpf = (cpfKey != Cpf.INVALID && Cpf.isCanonical(cpf)) ? null : cpf;
+	this.name = name;
+  }
+
+  public Pessoa(long cpf, String name) {
+	this.cpfKey = cpf;
+	this.cpf = null;
 	this.name = name;
   }
 
   public String getCPF() {
-	return this.cpf;
+	return cpf != null ? cpf : Cpf.format(cpfKey);
+  }
+
+  /**
+   * @return o CPF numérico, ou {@link Cpf#INVALID} caso o CPF não seja um número.
+   */
+  public long getCpfKey() {
+	return cpfKey;
   }
 
   public String getName() {
 	return name;
   }
 
+  /**
+   * Duas pessoas são iguais quando têm o mesmo CPF, mesmo que um esteja
+   * formatado e o outro não. CPFs que não são números são comparados como texto.
+   */
+  @Override
+  public boolean equals(Object obj) {
+	if (this == obj)
+	  return true;
+
+	if (!(obj instanceof Pessoa))
+	  return false;
+
+	Pessoa outra = (Pessoa) obj;
+	if (cpfKey == Cpf.INVALID || outra.cpfKey == Cpf.INVALID)
+	  return cpfKey == outra.cpfKey && String.valueOf(cpf).equals(outra.cpf);
+
+	return cpfKey == outra.cpfKey;
+  }
+
+  @Override
+  public int hashCode() {
+	return cpfKey != Cpf.INVALID ? Long.hashCode(cpfKey) : String.valueOf(cpf).hashCode();
+  }
+
   /**
    * formata o cpf e o nome em um texto legível.
    */
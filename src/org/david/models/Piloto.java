@@ -1,24 +1,95 @@
 package org.david.models;
 
+import org.david.utils.IndexSlot;
+
 /**
  * Classe piloto.
+ * 
+ * A licença é guardada como o código dela no {@link LicenseDictionary#shared()}.
+ * 
+ * Além dos dados, cada piloto guarda a posição dele nos índices da
+ * {@link org.david.PilotRegistry}, usadas só para remover dos índices.
+ * 
  * @author David Duarte Pinheiro
  */
 public final class Piloto extends Pessoa {
 
-  private String license;
+  /**
+   * Posição do piloto no nó do {@link org.david.utils.PrefixIndex} dos nomes.
+   */
+  public static final IndexSlot<Piloto> NAME_SLOT = new IndexSlot<Piloto>() {
+
+	@Override
+	public int get(Piloto pilot) {
+	  return pilot.nameSlot;
+	}
+
+	@Override
+	public void set(Piloto pilot, int slot) {
+	  pilot.nameSlot = slot;
+	}
+  };
+
+  /**
+   * Posição do piloto no grupo da licença dele no {@link org.david.utils.CodeIndex}.
+   */
+  public static final IndexSlot<Piloto> LICENSE_SLOT = new IndexSlot<Piloto>() {
+
+	@Override
+	public int get(Piloto pilot) {
+	  return pilot.licenseSlot;
+	}
+
+	@Override
+	public void set(Piloto pilot, int slot) {
+	  pilot.licenseSlot = slot;
+	}
+  };
+
+  private final int licenseCode;
+
+  /* 
+   * posições do piloto nos índices, fora do equals.
+   */
+  private int nameSlot;
+  private int licenseSlot;
   
   public Piloto(String cpf, String name) {
 	super(cpf, name);
+	this.licenseCode = LicenseDictionary.NONE;
   }
 
   public Piloto(String cpf, String name, String license) {
 	super(cpf, name);
-	this.license = license;
+	this.licenseCode = LicenseDictionary.shared().intern(license);
+  }
+
+  public Piloto(long cpf, String name, String license) {
+	this(cpf, name, LicenseDictionary.shared().intern(license));
+  }
+
+  /**
+   * @param licenseCode código já criado pelo {@link LicenseDictionary#shared()}.
+   * @throws IllegalArgumentException caso o código não exista no dicionário.
+   */
+  public Piloto(long cpf, String name, int licenseCode) {
+	super(cpf, name);
+
+	if (!LicenseDictionary.shared().contains(licenseCode))
+	  throw new IllegalArgumentException("Código de licença inexistente: " + licenseCode);
+
+	this.licenseCode = licenseCode;
   }
 
   public String getLicense() {
-	return license;
+	return LicenseDictionary.shared().license(licenseCode);
+  }
+
+  /**
+   * @return o código da licença ou {@link LicenseDictionary#NONE}.
+   */
+  public int getLicenseCode() {
+	return licenseCode;
   }
 
   @Override
@@ -1,12 +1,14 @@
 package org.david.options;
 
+import java.io.PrintStream;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.NoSuchElementException;
 
 import org.david.exceptions.RegisterValidationException;
+import org.david.input.InputSource;
+import org.david.input.ValueParser;
 import org.david.utils.DataRegister;
-import org.david.utils.Utils;
 
 /**
  * Essa classe é de fato a real implementação da execução da Opção,
@@ -18,7 +20,7 @@ import org.david.utils.Utils;
  * 
  * Essa classe não possui tipo genérico, então por isso, o tipo passado
  * para a {@link OptionProperty} vai ser Boolean, permitindo que no fim
- * da execução do método {@link Option#execute(Scanner)} ele retorne um
+ * da execução do método {@link Option#execute(InputSource)} ele retorne um
  * valor booleano, que será usado para saber se o programa irá ser encerrado
  * ou não.
  * 
@@ -46,6 +48,16 @@ public class DefaultOptionProperty extends OptionProperty<Boolean> {
    */
   private String description;
 
+  /**
+   * Opções escondidas não aparecem no menu, mas continuam podendo ser executadas.
+   */
+  private boolean displayable = true;
+
+  /**
+   * Onde as perguntas são escritas, null para o System.out do momento.
+   */
+  private PrintStream output;
+
   /**
    * Classe responsável por criar futuramente todas as opções do sistema.
    */
@@ -71,40 +83,61 @@ public class DefaultOptionProperty extends OptionProperty<Boolean> {
    * 
    * @return verdadeiro para manter o programa em estado ativo.
    */
-  public Boolean execute(Scanner scanner) {
+  public Boolean execute(InputSource input) {
+	return execute(input, OptionTracer.NONE);
+  }
+
+  /**
+   * Igual ao {@link DefaultOptionProperty#execute(InputSource)}, separando o
+   * tempo de espera pelos valores do tempo do {@link IDelivery}.
+   */
+  @Override
+  public Boolean execute(InputSource input, OptionTracer tracer) {
+
+	boolean medir = tracer != OptionTracer.NONE;
+	long inicio = medir ? System.nanoTime() : 0;
 
 	Map<String, Object> data = new HashMap<>();
 
 	for (int i = 0; i < requiredProperties.size(); i++) {
 	  Property property = requiredProperties.get(i);
-	  System.out.println(property.getMessage());
-	  Object value = treatValue(property.getRequiredType(), scanner);
+	  output().println(property.getMessage());
+	  Object value = treatValue(property.getParser(), input);
 	  data.put(property.getKey(), value);
 	}
 
-	if (deliveryHandler != null) {
-	  return deliveryHandler.receive(data);
+	if (medir) {
+	  long lido = System.nanoTime();
+	  tracer.inputWaited(this, lido - inicio);
+	  inicio = lido;
 	}
 
-	return true; /* continue */
+	try {
+	  if (deliveryHandler != null) {
+		return deliveryHandler.receive(data);
+	  }
+
+	  return true; /* continue */
+	} finally {
+	  if (medir)
+		tracer.handled(this, System.nanoTime() - inicio);
+	}
   }
 
   /**
    * Função necessária para o tratamento do input que o codigo
    * irá receber.
    * 
-   * @param requiredType tipo requirido nesse input
+   * @param parser conversor do tipo requirido nesse input
    * @return retorna um valor válido.
+   * @throws NoSuchElementException caso o input tenha acabado.
    */
-  private Object treatValue(Class<?> requiredType, Scanner scanner) {
-	Object value = null;
-	do {
-	  try {
-		value = Utils.getScannerByType(requiredType, scanner);
-	  }catch(Exception e) {
-		System.out.println("Você digitou um valor que não corresponde ao tipo requerido.\n por favor, tente novamente.");
-	  }
-	} while (value == null);
+  private Object treatValue(ValueParser<?> parser, InputSource input) {
+	Object value = parser.parse(input.nextToken());
+	while (value == null) {
+	  output().println("Você digitou um valor que não corresponde ao tipo requerido.\n por favor, tente novamente.");
+	  value = parser.parse(input.nextToken());
+	}
 	return value;
   }
 
@@ -134,6 +167,33 @@ public class DefaultOptionProperty extends OptionProperty<Boolean> {
 	this.description = description;
   }
 
+  /**
+   * Troca a saída das perguntas, ex.: o socket de uma sessão do servidor.
+   * @throws NullPointerException caso a saída seja nula.
+   */
+  public void setOutput(PrintStream output) {
+	if (output == null)
+	  throw new NullPointerException("Saída nula.");
+
+	this.output = output;
+  }
+
+  private PrintStream output() {
+	return output != null ? output : System.out;
+  }
+
+  /**
+   * Esconde ou mostra a opção no menu.
+   */
+  public void setDisplayable(boolean displayable) {
+	this.displayable = displayable;
+  }
+
+  @Override
+  public boolean isDisplayable() {
+	return displayable && description != null;
+  }
+
   public DataRegister<Property> getRequiredProperties() {
 	return requiredProperties;
   }
@@ -1,15 +1,24 @@
 package org.david.options;
 
+import java.util.function.Consumer;
+
 import org.david.utils.DataRegister;
 
 /**
  * permite que seja usado a expressão lamda para iteração dos
  * elementos do {@link DataRegister}.
  * 
+ * Também é um {@link Consumer}, então pode ser passado para as streams.
+ * 
  * @author David Duarte Pinheiro
  */
-public interface Iterateable<E> {
+public interface Iterateable<E> extends Consumer<E> {
 
   public void execute(E iterate);
 
+  @Override
+  default void accept(E iterate) {
+	execute(iterate);
+  }
+
 }
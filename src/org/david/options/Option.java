@@ -1,6 +1,6 @@
 package org.david.options;
 
-import java.util.Scanner;
+import org.david.input.InputSource;
 
 /**
  * Essa interface é responsável por servir de padrão para
@@ -21,11 +21,28 @@ public interface Option<E> {
    * o programa em estado de receber inputs ou não.
    * O 'execute()' será executado antes de qualquer ação do usuário.
    * 
-   * @param scanner input do usuário
+   * @param input input do usuário
    * @return retorna um valor generico, que futuramente será usado
    * para definir o rumo do programa.
    */
-  E execute(Scanner scanner);
+  E execute(InputSource input);
+
+  /**
+   * Executa a opção informando os tempos para o tracer. Por padrão todo o
+   * tempo conta como execução, as opções que leem input podem separar a
+   * espera pelo usuário.
+   * 
+   * @param input input do usuário
+   * @param tracer recebe os tempos.
+   */
+  default E execute(InputSource input, OptionTracer tracer) {
+	long inicio = System.nanoTime();
+	try {
+	  return execute(input);
+	} finally {
+	  tracer.handled(this, System.nanoTime() - inicio);
+	}
+  }
 
   /**
    * Este método quando chamado, é usado para dizer ao programa se essa
@@ -51,14 +68,25 @@ public interface Option<E> {
    * Esse método é usado futuramente para executar uma opção selecionada.
    * 
    * @param option A opção que será executada
-   * @param scanner o input do usuário.
-   * @return Retorna o valor generico fornecido pela execução do metodo {@link Option#execute(Scanner)}
+   * @param input o input do usuário.
+   * @return Retorna o valor generico fornecido pela execução do metodo {@link Option#execute(InputSource)}
    */
-  public static <E> E consumeOption(Option<E> option, Scanner scanner) {
+  public static <E> E consumeOption(Option<E> option, InputSource input) {
+	return consumeOption(option, input, OptionTracer.NONE);
+  }
+
+  /**
+   * Igual ao {@link Option#consumeOption(Option, InputSource)}, medindo a execução.
+   * 
+   * @param tracer recebe os tempos da opção.
+   */
+  public static <E> E consumeOption(Option<E> option, InputSource input, OptionTracer tracer) {
 	if (option == null)
 	  throw new NullPointerException("A opção passada é nula.");
 
-	E optionResult = option.execute(scanner);
-	return optionResult;
+	if (tracer == null || tracer == OptionTracer.NONE)
+	  return option.execute(input);
+
+	return option.execute(input, tracer);
   }
 }
@@ -0,0 +1,40 @@
+package org.david.options;
+
+/**
+ * Recebe os tempos de execução das opções, passado para o
+ * {@link Option#consumeOption(Option, org.david.input.InputSource, OptionTracer)}.
+ * 
+ * O tempo de uma opção é dividido entre a espera pelo input do usuário e
+ * a execução do {@link IDelivery#receive(Object)}. As opções que não
+ * separam os dois informam tudo como tempo de execução.
+ * 
+ * @author David Duarte Pinheiro
+ * @see org.david.metrics.HistogramTracer
+ */
+public interface OptionTracer {
+
+  /**
+   * Não registra nada, as opções nem medem o tempo.
+   */
+  OptionTracer NONE = new OptionTracer() {
+
+	@Override
+	public void inputWaited(Option<?> option, long nanos) {
+	}
+
+	@Override
+	public void handled(Option<?> option, long nanos) {
+	}
+  };
+
+  /**
+   * Tempo esperando o usuário digitar os valores da opção.
+   */
+  void inputWaited(Option<?> option, long nanos);
+
+  /**
+   * Tempo executando a opção em si.
+   */
+  void handled(Option<?> option, long nanos);
+
+}
@@ -1,5 +1,8 @@
 package org.david.options;
 
+import org.david.input.Parsers;
+import org.david.input.ValueParser;
+
 /**
  * 
  * Essa classe é fundamental, através dela é possível informar
@@ -34,10 +37,32 @@ public class Property {
    */
   private final String message;
 
+  /**
+   * Conversor do input para o tipo requerido, resolvido uma única vez aqui.
+   */
+  private final ValueParser<?> parser;
+
   public Property(String key, Class<?> requiredType, String message) {
 	this.key = key;
 	this.message = message;
 	this.requiredType = requiredType;
+	this.parser = Parsers.forType(requiredType);
+  }
+
+  /**
+   * Property com um conversor próprio (ex.: {@link Parsers#CPF}).
+   *
+   * @param requiredType tipo dos valores que o conversor devolve.
+   */
+  public <T> Property(String key, Class<T> requiredType, ValueParser<? extends T> parser, String message) {
+
+	if (requiredType == null || parser == null)
+	  throw new NullPointerException("Tipo ou conversor nulo.");
+
+	this.key = key;
+	this.message = message;
+	this.requiredType = requiredType;
+	this.parser = parser;
   }
 
   public String getKey() {
@@ -51,4 +76,8 @@ public class Property {
   public Class<?> getRequiredType() {
 	return requiredType;
   }
+
+  public ValueParser<?> getParser() {
+	return parser;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,198 @@
+package org.david.server;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.david.Application;
+import org.david.PilotRegistry;
+import org.david.input.ByteInput;
+import org.david.metrics.HistogramTracer;
+
+/**
+ * Servidor TCP local que atende cada conexão com uma {@link Application}
+ * própria, todas sobre o mesmo {@link PilotRegistry}.
+ *
+ * Cada sessão roda numa thread virtual quando o Java tem (21 ou mais), senão
+ * numa thread de um pool que cresce conforme a demanda. O input da sessão é um
+ * {@link ByteInput} sobre o socket e a saída é um PrintStream sobre o socket,
+ * passado para a {@link Application}; o System.out não é tocado.
+ *
+ * Os tempos das opções de todas as sessões vão para o mesmo
+ * {@link HistogramTracer}, que o servidor resume periodicamente quando a
+ * propriedade {@link Application#STATS_INTERVAL_PROPERTY} está definida.
+ *
+ * O servidor só escuta no endereço de loopback.
+ *
+ * @author David Duarte Pinheiro
+ */
+public final class PilotServer implements Closeable {
+
+  /**
+   * Propriedade de sistema com a porta do servidor. Com ela o {@link org.david.Main}
+   * roda o servidor no lugar do console (0 escolhe uma porta livre).
+   */
+  public static final String PORT_PROPERTY = "prova2.server.port";
+
+  /**
+   * Conexões esperando o accept antes do sistema recusar novas.
+   */
+  public static final int BACKLOG = 1024;
+
+  /**
+   * Tamanho dos buffers de leitura e escrita de cada sessão.
+   */
+  public static final int SESSION_BUFFER_SIZE = 8 * 1024;
+
+  private final PilotRegistry registry;
+  private final HistogramTracer tracer = new HistogramTracer();
+  private final ServerSocket serverSocket;
+  private final ExecutorService sessions;
+  private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+  private volatile boolean closed;
+
+  private PilotServer(PilotRegistry registry, ServerSocket serverSocket) {
+	this.registry = registry;
+	this.serverSocket = serverSocket;
+	this.sessions = newSessionExecutor();
+
+	long statsInterval = Long.getLong(Application.STATS_INTERVAL_PROPERTY, 0L);
+	if (statsInterval > 0)
+	  tracer.startPeriodicDump(statsInterval, TimeUnit.SECONDS, System.err);
+  }
+
+  /**
+   * Abre o servidor na porta do loopback, sem começar a aceitar conexões.
+   *
+   * @param port porta, 0 para uma porta livre.
+   * @see PilotServer#serve()
+   */
+  public static PilotServer open(PilotRegistry registry, int port) throws IOException {
+
+	if (registry == null)
+	  throw new NullPointerException("Lista dos pilotos nula.");
+
+	ServerSocket serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+	return new PilotServer(registry, serverSocket);
+  }
+
+  /**
+   * Threads virtuais por reflexão, para continuar compilando no Java 8.
+   */
+  private static ExecutorService newSessionExecutor() {
+	try {
+	  return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+	} catch (ReflectiveOperationException e) {
+	  AtomicInteger numero = new AtomicInteger();
+	  return Executors.newCachedThreadPool(task -> {
+		Thread thread = new Thread(task, "pilot-session-" + numero.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	  });
+	}
+  }
+
+  /**
+   * Aceita conexões até o servidor ser fechado, cada uma vira uma sessão.
+   */
+  public void serve() throws IOException {
+	while (!closed) {
+	  Socket socket;
+	  try {
+		socket = serverSocket.accept();
+	  } catch (SocketException e) {
+		/* o close() fecha o ServerSocket para destravar o accept */
+		if (closed)
+		  return;
+		throw e;
+	  }
+
+	  try {
+		sessions.execute(() -> session(socket));
+	  } catch (RejectedExecutionException e) {
+		socket.close();
+	  }
+	}
+  }
+
+  /**
+   * Roda o menu para a conexão até o cliente encerrar ou desconectar.
+   */
+  private void session(Socket socket) {
+	connections.add(socket);
+	try (Socket conexao = socket) {
+	  /* fechado enquanto a sessão esperava uma thread */
+	  if (closed)
+		return;
+
+	  conexao.setTcpNoDelay(true);
+	  PrintStream out = new PrintStream(
+		  new BufferedOutputStream(conexao.getOutputStream(), SESSION_BUFFER_SIZE), true, "UTF-8");
+	  try {
+		new Application(new ByteInput(conexao.getInputStream(), SESSION_BUFFER_SIZE), out, registry, tracer).execute();
+	  } finally {
+		out.flush();
+	  }
+	} catch (IOException | UncheckedIOException e) {
+	  /* o cliente desconectou no meio da sessão */
+	} finally {
+	  connections.remove(socket);
+	}
+  }
+
+  /**
+   * @return a porta em que o servidor está escutando.
+   */
+  public int getPort() {
+	return serverSocket.getLocalPort();
+  }
+
+  /**
+   * @return os tempos das opções de todas as sessões.
+   */
+  public HistogramTracer getTracer() {
+	return tracer;
+  }
+
+  /**
+   * @return quantas sessões estão abertas agora.
+   */
+  public int activeSessions() {
+	return connections.size();
+  }
+
+  /**
+   * Para de aceitar conexões, desconecta as sessões abertas e para o resumo
+   * periódico dos tempos. A lista dos pilotos não é fechada, ela pertence a
+   * quem criou o servidor.
+   */
+  @Override
+  public void close() throws IOException {
+	closed = true;
+	tracer.stopPeriodicDump();
+	serverSocket.close();
+	sessions.shutdown();
+	/* a leitura do socket não é interrompível, então as conexões são fechadas */
+	for (Socket conexao : connections) {
+	  try {
+		conexao.close();
+	  } catch (IOException e) {
+		/* a sessão já está terminando */
+	  }
+	}
+  }
+
+}
@@ -0,0 +1,31 @@
+package org.david.storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Define de onde vêm as colunas do {@link PilotStore}: memória direta,
+ * arquivo mapeado, etc.
+ * 
+ * @author David Duarte Pinheiro
+ */
+public interface ColumnAllocator {
+
+  /**
+   * Aloca a coluna com pelo menos a quantidade de bytes passada.
+   * Caso a coluna já exista (ex.: um arquivo), o conteúdo dela é mantido.
+   * 
+   * @param column nome da coluna.
+   * @param bytes tamanho mínimo da coluna.
+   */
+  ByteBuffer allocate(String column, int bytes);
+
+  /**
+   * Troca a coluna por uma maior, mantendo o conteúdo dela.
+   * 
+   * @param column nome da coluna.
+   * @param current a coluna atual.
+   * @param bytes tamanho mínimo da nova coluna.
+   */
+  ByteBuffer reallocate(String column, ByteBuffer current, int bytes);
+
+}
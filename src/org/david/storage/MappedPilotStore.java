@@ -0,0 +1,178 @@
+package org.david.storage;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link PilotStore} persistido em arquivos mapeados na memória
+ * ({@link FileChannel#map(MapMode, long, long)}).
+ * 
+ * Cada coluna é um arquivo ('base.cpf', 'base.license', 'base.name-end',
+ * 'base.name', 'base.cpf-index' e 'base.cpf-index-row') no mesmo formato
+ * binário usado na memória, e o arquivo 'base.meta' guarda quantos pilotos
+ * foram gravados. Reabrir o armazenamento só mapeia os arquivos, sem converter
+ * nem indexar registro nenhum, e cada piloto novo é escrito direto na região
+ * mapeada.
+ * 
+ * O sistema grava as páginas mapeadas no disco em qualquer ordem, então o total
+ * só é atualizado pelo {@link MappedPilotStore#force()}, depois das colunas
+ * estarem no disco. Os pilotos adicionados depois do último force() não são
+ * considerados ao reabrir os arquivos; com a {@link org.david.PilotRegistry}
+ * eles voltam pelo log, que só é cortado depois de um force().
+ * 
+ * @author David Duarte Pinheiro
+ */
+public final class MappedPilotStore extends PilotStore implements Closeable, Flushable {
+
+  /* 
+   * identifica o arquivo de metadados ("PLT1").
+   */
+  public static final int MAGIC = 0x504C5431;
+
+  private static final String META_COLUMN = "meta";
+  private static final int META_BYTES = 16;
+  private static final int MAGIC_OFFSET = 0;
+  private static final int LICENSE_WIDTH_OFFSET = 4;
+  private static final int COUNT_OFFSET = 8;
+
+  private final MappedColumns columns;
+  private final MappedByteBuffer meta;
+
+  private MappedPilotStore(MappedColumns columns, MappedByteBuffer meta, int initialCapacity, int rows) {
+	super(columns, initialCapacity, rows);
+	this.columns = columns;
+	this.meta = meta;
+  }
+
+  /**
+   * Abre o armazenamento, criando os arquivos caso eles não existam.
+   * 
+   * @param base caminho base dos arquivos, sem extensão.
+   * @param initialCapacity quantos pilotos devem caber em um arquivo novo.
+   * @throws IOException caso os arquivos não possam ser abertos.
+   * @throws IllegalStateException caso os arquivos não sejam de um armazenamento.
+   */
+  public static MappedPilotStore open(Path base, int initialCapacity) throws IOException {
+
+	if (base == null)
+	  throw new NullPointerException("Caminho nulo.");
+
+	MappedColumns columns = new MappedColumns(base);
+	try {
+	  MappedByteBuffer meta = (MappedByteBuffer) columns.allocate(META_COLUMN, META_BYTES);
+	  int magic = meta.getInt(MAGIC_OFFSET);
+
+	  if (magic == 0) {
+		meta.putInt(MAGIC_OFFSET, MAGIC);
+		meta.putInt(LICENSE_WIDTH_OFFSET, LICENSE_WIDTH);
+		meta.putInt(COUNT_OFFSET, 0);
+	  } else if (magic != MAGIC || meta.getInt(LICENSE_WIDTH_OFFSET) != LICENSE_WIDTH) {
+		throw new IllegalStateException("Arquivo " + base + " não é um armazenamento de pilotos válido.");
+	  }
+
+	  return new MappedPilotStore(columns, meta, initialCapacity, meta.getInt(COUNT_OFFSET));
+	} catch (UncheckedIOException e) {
+	  columns.close();
+	  throw e.getCause();
+	} catch (RuntimeException e) {
+	  columns.close();
+	  throw e;
+	}
+  }
+
+  /**
+   * Força a gravação das colunas no disco e só depois grava e força o total,
+   * então um piloto que não chegou inteiro no disco nunca é considerado ao
+   * reabrir os arquivos.
+   */
+  public void force() {
+	columns.force();
+	meta.putInt(COUNT_OFFSET, size());
+	meta.force();
+  }
+
+  @Override
+  public void flush() {
+	force();
+  }
+
+  @Override
+  public void close() throws IOException {
+	force();
+	columns.close();
+  }
+
+  /**
+   * Cada coluna é um arquivo mapeado. Aumentar uma coluna só mapeia
+   * o mesmo arquivo com um tamanho maior, sem copiar nada.
+   */
+  private static final class MappedColumns implements ColumnAllocator, Closeable {
+
+	private final Path base;
+	private final Map<String, FileChannel> channels = new HashMap<>();
+	private final Map<String, MappedByteBuffer> mappings = new HashMap<>();
+
+	MappedColumns(Path base) {
+	  this.base = base;
+	}
+
+	@Override
+	public ByteBuffer allocate(String column, int bytes) {
+	  try {
+		FileChannel channel = channels.get(column);
+		if (channel == null) {
+		  channel = FileChannel.open(base.resolveSibling(base.getFileName() + "." + column),
+			  StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		  channels.put(column, channel);
+		}
+		long tamanho = Math.max(bytes, channel.size());
+
+		if (tamanho > Integer.MAX_VALUE)
+		  throw new IllegalStateException("Coluna " + column + " maior que 2GB.");
+
+		MappedByteBuffer mapping = channel.map(MapMode.READ_WRITE, 0, tamanho);
+		mappings.put(column, mapping);
+		return mapping;
+	  } catch (IOException e) {
+		throw new UncheckedIOException(e);
+	  }
+	}
+
+	@Override
+	public ByteBuffer reallocate(String column, ByteBuffer current, int bytes) {
+	  return allocate(column, bytes);
+	}
+
+	void force() {
+	  for (MappedByteBuffer mapping : mappings.values()) {
+		mapping.force();
+	  }
+	}
+
+	@Override
+	public void close() throws IOException {
+	  IOException falha = null;
+	  for (FileChannel channel : channels.values()) {
+		try {
+		  channel.close();
+		} catch (IOException e) {
+		  falha = e;
+		}
+	  }
+	  channels.clear();
+	  mappings.clear();
+	  if (falha != null)
+		throw falha;
+	}
+  }
+}
@@ -0,0 +1,270 @@
+package org.david.storage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.david.models.Piloto;
+import org.david.utils.Cpf;
+
+/**
+ * Importa pilotos de arquivos CSV/TSV com linhas no formato 'cpf,nome,licença'.
+ * 
+ * O arquivo é mapeado na memória e dividido em pedaços que sempre terminam
+ * em uma quebra de linha. Cada pedaço é lido em paralelo por um
+ * {@link ForkJoinPool}, direto dos bytes, sem criar uma String por linha nem
+ * usar split. Os separadores aceitos são vírgula, ponto e vírgula e tab; campos
+ * entre aspas não são suportados.
+ * 
+ * @author David Duarte Pinheiro
+ */
+public final class PilotImporter {
+
+  /* 
+   * tamanho mínimo de um pedaço do arquivo para ele ser dividido de novo.
+   */
+  public static final int SPLIT_THRESHOLD = 1 << 20;
+
+  /**
+   * Resultado da importação.
+   */
+  public static final class Result {
+
+	private final Piloto[] pilots;
+	private final int count;
+	private final int rejected;
+
+	private Result(Piloto[] pilots, int count, int rejected) {
+	  this.pilots = pilots;
+	  this.count = count;
+	  this.rejected = rejected;
+	}
+
+	/**
+	 * @return os pilotos lidos, na ordem do arquivo. Só as primeiras
+	 * {@link Result#count()} posições são válidas.
+	 */
+	public Piloto[] pilots() {
+	  return pilots;
+	}
+
+	/**
+	 * @return quantos pilotos foram lidos.
+	 */
+	public int count() {
+	  return count;
+	}
+
+	/**
+	 * @return quantas linhas foram ignoradas (CPF inválido, campos faltando, cabeçalho).
+	 */
+	public int rejected() {
+	  return rejected;
+	}
+  }
+
+  /**
+   * Lê todos os pilotos do arquivo.
+   * 
+   * @param file o arquivo CSV/TSV.
+   * @throws IOException caso o arquivo não possa ser lido.
+   * @throws IllegalArgumentException caso o arquivo seja maior que 2GB.
+   */
+  public static Result read(Path file) throws IOException {
+
+	if (file == null)
+	  throw new NullPointerException("Caminho nulo.");
+
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+	  long tamanho = channel.size();
+
+	  if (tamanho > Integer.MAX_VALUE)
+		throw new IllegalArgumentException("Arquivo maior que 2GB.");
+
+	  if (tamanho == 0)
+		return new Result(new Piloto[0], 0, 0);
+
+	  MappedByteBuffer conteudo = channel.map(MapMode.READ_ONLY, 0, tamanho);
+	  Chunk chunk = ForkJoinPool.commonPool().invoke(new ParseTask(conteudo, 0, (int) tamanho));
+	  return new Result(chunk.pilots, chunk.count, chunk.rejected);
+	}
+  }
+
+  /**
+   * Pilotos lidos de um pedaço do arquivo.
+   */
+  private static final class Chunk {
+
+	private Piloto[] pilots;
+	private int count;
+	private int rejected;
+
+	Chunk(int capacity) {
+	  this.pilots = new Piloto[Math.max(capacity, 1)];
+	}
+
+	void add(Piloto pilot) {
+	  if (count == pilots.length)
+		pilots = Arrays.copyOf(pilots, pilots.length << 1);
+	  pilots[count++] = pilot;
+	}
+
+	/**
+	 * Junta o pedaço seguinte no fim deste, mantendo a ordem do arquivo.
+	 */
+	Chunk append(Chunk next) {
+	  if (count + next.count > pilots.length)
+		pilots = Arrays.copyOf(pilots, count + next.count);
+	  System.arraycopy(next.pilots, 0, pilots, count, next.count);
+	  count += next.count;
+	  rejected += next.rejected;
+	  return this;
+	}
+  }
+
+  private static final class ParseTask extends RecursiveTask<Chunk> {
+
+	private static final long serialVersionUID = 4721436096185436582L;
+
+	private final MappedByteBuffer content;
+	private final int start;
+	private final int end;
+
+	ParseTask(MappedByteBuffer content, int start, int end) {
+	  this.content = content;
+	  this.start = start;
+	  this.end = end;
+	}
+
+	@Override
+	protected Chunk compute() {
+	  if (end - start > SPLIT_THRESHOLD) {
+		int meio = lineStart(start + (end - start) / 2);
+		if (meio > start && meio < end) {
+		  ParseTask direita = new ParseTask(content, meio, end);
+		  direita.fork();
+		  Chunk esquerda = new ParseTask(content, start, meio).compute();
+		  return esquerda.append(direita.join());
+		}
+	  }
+	  return parse();
+	}
+
+	/**
+	 * @return a posição logo depois da próxima quebra de linha.
+	 */
+	private int lineStart(int position) {
+	  int i = position;
+	  while (i < end && content.get(i) != '\n') {
+		i++;
+	  }
+	  return i + 1;
+	}
+
+	private Chunk parse() {
+	  /* estimativa de uns 32 bytes por linha */
+	  Chunk chunk = new Chunk((end - start) / 32);
+	  byte[] scratch = new byte[256];
+	  int[] campos = new int[6];
+
+	  int inicioLinha = start;
+	  while (inicioLinha < end) {
+		int fimLinha = inicioLinha;
+		while (fimLinha < end && content.get(fimLinha) != '\n') {
+		  fimLinha++;
+		}
+
+		if (!fields(inicioLinha, fimLinha, campos)) {
+		  if (!isBlank(inicioLinha, fimLinha))
+			chunk.rejected++;
+		} else {
+		  long cpf = parseCpf(campos[0], campos[1]);
+		  if (Cpf.isValid(cpf)) {
+			if (scratch.length < fimLinha - inicioLinha)
+			  scratch = new byte[fimLinha - inicioLinha];
+			try {
+			  chunk.add(new Piloto(cpf, text(campos[2], campos[3], scratch), text(campos[4], campos[5], scratch)));
+			} catch (IllegalArgumentException e) {
+			  /* licença nova com o dicionário de licenças cheio */
+			  chunk.rejected++;
+			}
+		  } else {
+			chunk.rejected++;
+		  }
+		}
+		inicioLinha = fimLinha + 1;
+	  }
+	  return chunk;
+	}
+
+	/**
+	 * Encontra os três campos da linha, sem os espaços em volta, guardando
+	 * o início e o fim de cada um em 'campos'.
+	 * 
+	 * @return falso caso falte algum campo.
+	 */
+	private boolean fields(int lineStart, int lineEnd, int[] campos) {
+	  int campo = 0;
+	  int inicio = lineStart;
+	  for (int i = lineStart; i <= lineEnd && campo < 3; i++) {
+		byte b = i < lineEnd ? content.get(i) : (byte) '\n';
+		if (b == ',' || b == ';' || b == '\t' || i == lineEnd) {
+		  int fim = i;
+		  while (inicio < fim && isSpace(content.get(inicio))) {
+			inicio++;
+		  }
+		  while (fim > inicio && isSpace(content.get(fim - 1))) {
+			fim--;
+		  }
+		  campos[campo * 2] = inicio;
+		  campos[campo * 2 + 1] = fim;
+		  campo++;
+		  inicio = i + 1;
+		}
+	  }
+	  return campo == 3;
+	}
+
+	private long parseCpf(int from, int to) {
+	  long valor = 0;
+	  int digitos = 0;
+	  for (int i = from; i < to; i++) {
+		byte b = content.get(i);
+		if (b >= '0' && b <= '9') {
+		  if (++digitos > Cpf.DIGITS)
+			return Cpf.INVALID;
+		  valor = valor * 10 + (b - '0');
+		} else if (b != '.' && b != '-') {
+		  return Cpf.INVALID;
+		}
+	  }
+	  return digitos == 0 ? Cpf.INVALID : valor;
+	}
+
+	private String text(int from, int to, byte[] scratch) {
+	  for (int i = from; i < to; i++) {
+		scratch[i - from] = content.get(i);
+	  }
+	  return new String(scratch, 0, to - from, StandardCharsets.UTF_8);
+	}
+
+	private boolean isBlank(int from, int to) {
+	  for (int i = from; i < to; i++) {
+		if (!isSpace(content.get(i)))
+		  return false;
+	  }
+	  return true;
+	}
+
+	private static boolean isSpace(byte b) {
+	  return b == ' ' || b == '\r' || b == '\t';
+	}
+  }
+}
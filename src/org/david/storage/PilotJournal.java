@@ -0,0 +1,403 @@
+package org.david.storage;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import org.david.models.Piloto;
+import org.david.options.Iterateable;
+
+/**
+ * Log de escrita antecipada (write-ahead log) dos cadastros de pilotos.
+ * 
+ * Cada cadastro vira um registro no fim do arquivo, e o {@link PilotJournal#append(Piloto)}
+ * só retorna depois do registro estar no disco. As threads que adicionam ao mesmo
+ * tempo são agrupadas (group commit): a primeira que chegar grava e força tudo que
+ * estiver pendente com um único {@link FileChannel#force(boolean)}, e as outras só
+ * esperam.
+ * 
+ * <blockquote>
+ * <b>Registro:</b>
+ * <br>
+ * tamanho (4 bytes) | cpf (8) | nome (4 + n) | licença (4 + n) | CRC32 (4)
+ * </blockquote>
+ * 
+ * @author David Duarte Pinheiro
+ */
+public final class PilotJournal implements Closeable {
+
+  /* 
+   * tamanho inicial do buffer de registros pendentes.
+   */
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final int HEADER_BYTES = Integer.BYTES;
+  private static final int CRC_BYTES = Integer.BYTES;
+
+  private final FileChannel channel;
+  private final Object lock = new Object();
+
+  /* 
+   * registros esperando a próxima gravação, e o buffer que
+   * está sendo gravado no momento (alternam entre si).
+   */
+  private ByteBuffer pending;
+  private ByteBuffer spare;
+
+  private long appended;
+  private long durable;
+
+  /* 
+   * onde termina o último lote que chegou no disco.
+   */
+  private long durablePosition;
+  private boolean flushing;
+  private IOException failure;
+
+  private long forces;
+  private long sinceCheckpoint;
+
+  private PilotJournal(FileChannel channel) {
+	this.channel = channel;
+	this.pending = ByteBuffer.allocate(BUFFER_SIZE);
+	this.spare = ByteBuffer.allocate(BUFFER_SIZE);
+  }
+
+  /**
+   * Abre o log, criando o arquivo caso ele não exista.
+   * 
+   * @throws IOException caso o arquivo não possa ser aberto.
+   */
+  public static PilotJournal open(Path file) throws IOException {
+
+	if (file == null)
+	  throw new NullPointerException("Caminho nulo.");
+
+	return open(FileChannel.open(file, StandardOpenOption.CREATE,
+		StandardOpenOption.READ, StandardOpenOption.WRITE));
+  }
+
+  /**
+   * Abre o log sobre um canal já aberto para leitura e escrita, que passa a
+   * pertencer ao log.
+   * 
+   * @throws IOException caso o canal não possa ser posicionado no fim.
+   */
+  public static PilotJournal open(FileChannel channel) throws IOException {
+
+	if (channel == null)
+	  throw new NullPointerException("Canal nulo.");
+
+	channel.position(channel.size());
+	PilotJournal journal = new PilotJournal(channel);
+	journal.durablePosition = channel.size();
+	return journal;
+  }
+
+  /**
+   * Lê todos os registros válidos do log. O primeiro registro incompleto ou
+   * corrompido (ex.: o processo caiu no meio da gravação) marca o fim do log,
+   * e o arquivo é cortado ali para as próximas gravações.
+   * 
+   * @param consumer recebe cada piloto recuperado, na ordem em que foram gravados.
+   * @return quantos registros foram recuperados.
+   * @throws IOException caso o arquivo não possa ser lido.
+   */
+  public int replay(Iterateable<Piloto> consumer) throws IOException {
+
+	if (consumer == null)
+	  throw new NullPointerException("Null consumer.");
+
+	synchronized (lock) {
+	  ByteBuffer conteudo = ByteBuffer.allocate((int) Math.min(channel.size(), Integer.MAX_VALUE));
+	  channel.position(0);
+	  while (conteudo.hasRemaining() && channel.read(conteudo) >= 0);
+	  conteudo.flip();
+
+	  int recuperados = 0;
+	  int fimValido = 0;
+	  CRC32 crc = new CRC32();
+	  while (conteudo.remaining() >= HEADER_BYTES) {
+		int tamanho = conteudo.getInt(fimValido);
+		if (tamanho <= 0 || tamanho > conteudo.limit() - fimValido - HEADER_BYTES - CRC_BYTES)
+		  break;
+
+		ByteBuffer registro = conteudo.duplicate();
+		registro.position(fimValido + HEADER_BYTES).limit(fimValido + HEADER_BYTES + tamanho);
+		crc.reset();
+		crc.update(registro.duplicate());
+		if ((int) crc.getValue() != conteudo.getInt(fimValido + HEADER_BYTES + tamanho))
+		  break;
+
+		consumer.execute(decode(registro));
+		recuperados++;
+		fimValido += HEADER_BYTES + tamanho + CRC_BYTES;
+		conteudo.position(fimValido);
+	  }
+
+	  channel.truncate(fimValido);
+	  channel.position(fimValido);
+	  durablePosition = fimValido;
+	  sinceCheckpoint = recuperados;
+	  return recuperados;
+	}
+  }
+
+  /**
+   * Grava o cadastro no log e espera ele chegar no disco.
+   * 
+   * @throws IOException caso a gravação falhe. O lote que falhou é cortado do
+   * arquivo (quando possível), para não ser reaplicado, e o log deixa de
+   * aceitar registros.
+   */
+  public void append(Piloto pilot) throws IOException {
+
+	if (pilot == null)
+	  throw new NullPointerException("Nâo é possível adicionar um valor nulo.");
+
+	byte[] registro = encode(pilot);
+	long sequencia;
+
+	synchronized (lock) {
+	  if (failure != null)
+		throw failure;
+
+	  enqueue(registro);
+	  sequencia = ++appended;
+	  sinceCheckpoint++;
+	}
+
+	awaitDurable(sequencia);
+  }
+
+  /**
+   * Grava vários cadastros no log com um único {@link FileChannel#force(boolean)},
+   * usado nas importações em massa.
+   * 
+   * @param pilots os pilotos, os nulos são ignorados.
+   * @throws IOException caso a gravação falhe.
+   */
+  public void appendAll(Piloto[] pilots, int offset, int length) throws IOException {
+
+	if (pilots == null)
+	  throw new NullPointerException("Vetor nulo.");
+
+	long sequencia = 0;
+	for (int i = offset; i < offset + length; i++) {
+	  if (pilots[i] == null)
+		continue;
+
+	  byte[] registro = encode(pilots[i]);
+	  synchronized (lock) {
+		if (failure != null)
+		  throw failure;
+
+		enqueue(registro);
+		sequencia = ++appended;
+		sinceCheckpoint++;
+	  }
+	}
+
+	if (sequencia > 0)
+	  awaitDurable(sequencia);
+  }
+
+  /**
+   * Força o armazenamento e corta o log, já que tudo que estava nele está
+   * no armazenamento. Reaplicar um registro que já está no armazenamento é
+   * inofensivo, então registros que ainda estavam pendentes podem ficar no log.
+   * 
+   * @param store o armazenamento que recebeu os cadastros do log.
+   * @throws IOException caso o armazenamento ou o log falhem.
+   */
+  public void checkpoint(Flushable store) throws IOException {
+
+	if (store == null)
+	  throw new NullPointerException("Armazenamento nulo.");
+
+	synchronized (lock) {
+	  waitFlushing();
+	  if (failure != null)
+		throw failure;
+
+	  store.flush();
+	  channel.truncate(0);
+	  channel.position(0);
+	  channel.force(true);
+	  durablePosition = 0;
+	  sinceCheckpoint = appended - durable;
+	}
+  }
+
+  /**
+   * @return quantos registros foram gravados desde o último checkpoint.
+   */
+  public long recordsSinceCheckpoint() {
+	synchronized (lock) {
+	  return sinceCheckpoint;
+	}
+  }
+
+  /**
+   * @return quantas vezes o log foi forçado no disco.
+   */
+  public long forces() {
+	synchronized (lock) {
+	  return forces;
+	}
+  }
+
+  @Override
+  public void close() throws IOException {
+	long ultimo;
+	boolean falhou;
+	synchronized (lock) {
+	  ultimo = appended;
+	  falhou = failure != null;
+	}
+	try {
+	  if (!falhou)
+		awaitDurable(ultimo);
+	} finally {
+	  channel.close();
+	}
+  }
+
+  /**
+   * Espera o registro da sequência passada chegar no disco. Caso nenhuma thread
+   * esteja gravando, esta thread grava todos os registros pendentes de uma vez.
+   */
+  private void awaitDurable(long sequencia) throws IOException {
+	while (true) {
+	  ByteBuffer lote;
+	  long fimDoLote;
+
+	  synchronized (lock) {
+		waitFlushing();
+		if (durable >= sequencia)
+		  return;
+		if (failure != null)
+		  throw failure;
+
+		flushing = true;
+		lote = pending;
+		pending = spare;
+		spare = null;
+		fimDoLote = appended;
+	  }
+
+	  IOException erro = null;
+	  try {
+		lote.flip();
+		while (lote.hasRemaining()) {
+		  channel.write(lote);
+		}
+		channel.force(false);
+	  } catch (IOException e) {
+		erro = e;
+		discardFailedBatch();
+	  }
+
+	  synchronized (lock) {
+		lote.clear();
+		spare = lote;
+		flushing = false;
+		forces++;
+		if (erro == null) {
+		  durable = fimDoLote;
+		  durablePosition = channel.position();
+		} else {
+		  failure = erro;
+		}
+		lock.notifyAll();
+	  }
+
+	  if (erro != null)
+		throw erro;
+	}
+  }
+
+  /**
+   * Corta o que o lote que falhou chegou a escrever. Os cadastros dele não
+   * foram confirmados, então não podem voltar num replay. Se nem o corte
+   * funcionar, o registro incompleto ou corrompido ainda marca o fim do log.
+   */
+  private void discardFailedBatch() {
+	try {
+	  channel.truncate(durablePosition);
+	  channel.position(durablePosition);
+	  channel.force(false);
+	} catch (IOException e) {
+	  /* o log já está falhando, a falha original é a que importa */
+	}
+  }
+
+  /**
+   * Coloca o registro no buffer pendente, aumentando ele se precisar.
+   * Deve ser chamado segurando o lock.
+   */
+  private void enqueue(byte[] registro) {
+	if (pending.remaining() < registro.length) {
+	  ByteBuffer maior = ByteBuffer.allocate(Math.max(pending.capacity() << 1, pending.position() + registro.length));
+	  pending.flip();
+	  maior.put(pending);
+	  pending = maior;
+	}
+	pending.put(registro);
+  }
+
+  /**
+   * Espera a gravação atual terminar. Deve ser chamado segurando o lock.
+   */
+  private void waitFlushing() throws InterruptedIOException {
+	while (flushing) {
+	  try {
+		lock.wait();
+	  } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new InterruptedIOException("Interrompido esperando o log.");
+	  }
+	}
+  }
+
+  private static byte[] encode(Piloto pilot) {
+	byte[] nome = bytesOf(pilot.getName());
+	byte[] licenca = bytesOf(pilot.getLicense());
+	int tamanho = Long.BYTES + Integer.BYTES + nome.length + Integer.BYTES + licenca.length;
+
+	ByteBuffer registro = ByteBuffer.allocate(HEADER_BYTES + tamanho + CRC_BYTES);
+	registro.putInt(tamanho);
+	registro.putLong(pilot.getCpfKey());
+	registro.putInt(nome.length).put(nome);
+	registro.putInt(licenca.length).put(licenca);
+
+	CRC32 crc = new CRC32();
+	crc.update(registro.array(), HEADER_BYTES, tamanho);
+	registro.putInt((int) crc.getValue());
+	return registro.array();
+  }
+
+  private static Piloto decode(ByteBuffer registro) {
+	long cpf = registro.getLong();
+	String nome = stringOf(registro);
+	String licenca = stringOf(registro);
+	return new Piloto(cpf, nome, licenca);
+  }
+
+  private static byte[] bytesOf(String text) {
+	return text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String stringOf(ByteBuffer registro) {
+	byte[] bytes = new byte[registro.getInt()];
+	registro.get(bytes);
+	return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,539 @@
+package org.david.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.david.models.Piloto;
+import org.david.options.Iterateable;
+import org.david.utils.Cpf;
+
+/**
+ * Armazena os pilotos fora da heap, em colunas de {@link ByteBuffer} diretos.
+ * 
+ * <blockquote>
+ * <b>Colunas:</b>
+ * <br>
+ * cpf: 8 bytes por piloto (o CPF numérico).
+ * <br>
+ * licença: {@link PilotStore#LICENSE_WIDTH} bytes por piloto, o primeiro é o tamanho.
+ * <br>
+ * nomes: os bytes UTF-8 de todos os nomes, um seguido do outro, e uma coluna
+ * de 4 bytes por piloto com a posição onde cada nome termina.
+ * <br>
+ * índice: tabela de hash do CPF para a linha, em duas colunas (8 bytes da
+ * chave e 4 bytes da linha + 1 por posição), então um armazenamento reaberto
+ * não precisa indexar os CPFs de novo.
+ * </blockquote>
+ * 
+ * Assim cada piloto não custa nenhum objeto na heap. Os objetos {@link Piloto}
+ * só são criados quando alguém pede por eles, e o {@link PilotStore.View}
+ * permite ler as colunas sem criar nenhum.
+ * 
+ * @author David Duarte Pinheiro
+ */
+public class PilotStore {
+
+  /* 
+   * capacidade inicial padrão
+   */
+  public static final int INITIAL_CAPACITY = 64;
+
+  /* 
+   * bytes reservados para cada licença, contando o byte do tamanho.
+   */
+  public static final int LICENSE_WIDTH = 16;
+
+  /* 
+   * nome das colunas, usados pelo {@link ColumnAllocator}.
+   */
+  public static final String CPF_COLUMN = "cpf";
+  public static final String LICENSE_COLUMN = "license";
+  public static final String NAME_END_COLUMN = "name-end";
+  public static final String NAME_COLUMN = "name";
+  public static final String INDEX_KEY_COLUMN = "cpf-index";
+  public static final String INDEX_ROW_COLUMN = "cpf-index-row";
+
+  /* 
+   * bytes por piloto em cada coluna de tamanho fixo.
+   */
+  private static final int CPF_WIDTH = Long.BYTES;
+  private static final int OFFSET_WIDTH = Integer.BYTES;
+  private static final int INDEX_KEY_WIDTH = Long.BYTES;
+  private static final int INDEX_ROW_WIDTH = Integer.BYTES;
+
+  /* 
+   * posições do índice num armazenamento novo (sempre potência de 2).
+   */
+  private static final int INITIAL_INDEX_SLOTS = 16;
+
+  /* 
+   * maior índice cuja coluna das chaves ainda cabe em um ByteBuffer.
+   */
+  private static final int MAX_INDEX_SLOTS = Integer.highestOneBit(Integer.MAX_VALUE / INDEX_KEY_WIDTH);
+
+  /**
+   * Quantos pilotos cabem no armazenamento: o índice fica no máximo pela
+   * metade, e com esse limite a posição de qualquer linha em qualquer coluna
+   * de tamanho fixo cabe num int.
+   */
+  public static final int MAX_CAPACITY = MAX_INDEX_SLOTS / 2;
+
+  /* 
+   * bytes reservados para os nomes, por piloto, na capacidade inicial.
+   */
+  private static final int AVERAGE_NAME_WIDTH = 24;
+
+  private final ColumnAllocator allocator;
+
+  private ByteBuffer cpfs;
+  private ByteBuffer licenses;
+  private ByteBuffer nameEnds;
+  private ByteBuffer names;
+
+  private int count;
+
+  /* 
+   * índice do CPF para a linha (linha + 1, zero é vazio).
+   */
+  private ByteBuffer indexKeys;
+  private ByteBuffer indexRows;
+  private int indexSlots;
+
+  public PilotStore(int initialCapacity) {
+	this(DirectColumns.INSTANCE, initialCapacity, 0);
+  }
+
+  public PilotStore() {
+	this(INITIAL_CAPACITY);
+  }
+
+  /**
+   * Cria o armazenamento com as colunas vindas do 'allocator'.
+   * 
+   * @param allocator de onde vêm as colunas.
+   * @param initialCapacity quantos pilotos devem caber inicialmente.
+   * @param rows quantos pilotos as colunas já possuem (ex.: um arquivo reaberto).
+   * @throws IllegalArgumentException caso a capacidade ou as linhas passem do
+   * {@link PilotStore#MAX_CAPACITY}.
+   */
+  protected PilotStore(ColumnAllocator allocator, int initialCapacity, int rows) {
+
+	if (allocator == null)
+	  throw new NullPointerException("Alocador nulo.");
+
+	if (initialCapacity > MAX_CAPACITY || rows > MAX_CAPACITY)
+	  throw new IllegalArgumentException("Capacidade maior que o máximo de " + MAX_CAPACITY + " pilotos.");
+
+	int capacidade = Math.max(Math.max(initialCapacity, rows), 1);
+	this.allocator = allocator;
+	this.cpfs = allocator.allocate(CPF_COLUMN, columnBytes(capacidade, CPF_WIDTH));
+	this.licenses = allocator.allocate(LICENSE_COLUMN, columnBytes(capacidade, LICENSE_WIDTH));
+	this.nameEnds = allocator.allocate(NAME_END_COLUMN, columnBytes(capacidade, OFFSET_WIDTH));
+	this.names = allocator.allocate(NAME_COLUMN, (int) Math.min((long) capacidade * AVERAGE_NAME_WIDTH, Integer.MAX_VALUE));
+	this.indexKeys = allocator.allocate(INDEX_KEY_COLUMN, INITIAL_INDEX_SLOTS * INDEX_KEY_WIDTH);
+	this.indexSlots = Integer.highestOneBit(indexKeys.capacity() / INDEX_KEY_WIDTH);
+	this.indexRows = allocator.allocate(INDEX_ROW_COLUMN, indexSlots * INDEX_ROW_WIDTH);
+	this.count = rows;
+
+	/*
+	 * as linhas são indexadas em ordem, então basta a última estar no índice
+	 * para ele estar completo; senão (ex.: arquivos de uma versão sem o índice)
+	 * o índice é refeito uma única vez.
+	 */
+	if (rows > 0 && (rows * 2 > indexSlots || indexOf(cpfAt(rows - 1)) != rows - 1))
+	  rebuildIndex(Math.max(INITIAL_INDEX_SLOTS, Math.min(Integer.highestOneBit(rows * 2) << 1, MAX_INDEX_SLOTS)));
+  }
+
+  /**
+   * Adiciona o piloto nas colunas.
+   * 
+   * @return a linha em que o piloto foi guardado.
+   * @throws NullPointerException caso o piloto seja nulo.
+   * @throws IllegalArgumentException caso o CPF seja inválido ou já exista,
+   * caso a licença não caiba em {@link PilotStore#LICENSE_WIDTH} ou caso o
+   * armazenamento esteja cheio.
+   */
+  public int add(Piloto pilot) {
+
+	long cpf = check(pilot);
+	byte[] license = licenseBytes(pilot);
+	byte[] name = pilot.getName() == null ? new byte[0] : pilot.getName().getBytes(StandardCharsets.UTF_8);
+
+	ensureCapacity(count + 1, nameEnd(count) + name.length);
+
+	int linha = count;
+	cpfs.putLong(linha * CPF_WIDTH, cpf);
+
+	licenses.put(linha * LICENSE_WIDTH, (byte) license.length);
+	putBytes(licenses, linha * LICENSE_WIDTH + 1, license);
+
+	int inicioNome = nameEnd(linha);
+	putBytes(names, inicioNome, name);
+	nameEnds.putInt(linha * OFFSET_WIDTH, inicioNome + name.length);
+
+	count++;
+	indexRow(cpf, linha);
+	return linha;
+  }
+
+  /**
+   * Confere se o piloto pode ser adicionado, sem adicionar. Usado para
+   * validar o cadastro antes dele ser gravado no log.
+   * 
+   * @return o CPF do piloto.
+   * @throws NullPointerException caso o piloto seja nulo.
+   * @throws IllegalArgumentException nos mesmos casos do {@link PilotStore#add(Piloto)}.
+   */
+  public long check(Piloto pilot) {
+
+	if (pilot == null)
+	  throw new NullPointerException("Nâo é possível adicionar um valor nulo.");
+
+	long cpf = pilot.getCpfKey();
+
+	if (cpf == Cpf.INVALID)
+	  throw new IllegalArgumentException("CPF inválido.");
+
+	if (indexOf(cpf) >= 0)
+	  throw new IllegalArgumentException("Já existe um piloto com o CPF [" + pilot.getCPF() + "].");
+
+	if (count >= MAX_CAPACITY)
+	  throw new IllegalArgumentException("Armazenamento cheio, máximo de " + MAX_CAPACITY + " pilotos.");
+
+	/* até 3 bytes UTF-8 por char, sem converter o nome duas vezes */
+	int nome = pilot.getName() == null ? 0 : pilot.getName().length();
+	if ((long) nameEnd(count) + (long) nome * 3 > Integer.MAX_VALUE)
+	  throw new IllegalArgumentException("Coluna dos nomes cheia.");
+
+	licenseBytes(pilot);
+	return cpf;
+  }
+
+  private static byte[] licenseBytes(Piloto pilot) {
+	byte[] license = pilot.getLicense() == null ? new byte[0] : pilot.getLicense().getBytes(StandardCharsets.UTF_8);
+
+	if (license.length >= LICENSE_WIDTH)
+	  throw new IllegalArgumentException("Licença maior que " + (LICENSE_WIDTH - 1) + " bytes.");
+
+	return license;
+  }
+
+  /**
+   * Cria o piloto guardado na linha passada.
+   * 
+   * @throws IndexOutOfBoundsException caso a linha não exista.
+   */
+  public Piloto get(int row) {
+	checkRow(row);
+	return new Piloto(cpfAt(row), nameAt(row), licenseAt(row));
+  }
+
+  /**
+   * @return o CPF da linha, sem criar o piloto.
+   * @throws IndexOutOfBoundsException caso a linha não exista.
+   */
+  public long getCpfKey(int row) {
+	checkRow(row);
+	return cpfAt(row);
+  }
+
+  /**
+   * @return o nome da linha, sem criar o piloto.
+   * @throws IndexOutOfBoundsException caso a linha não exista.
+   */
+  public String getName(int row) {
+	checkRow(row);
+	return nameAt(row);
+  }
+
+  /**
+   * @return a licença da linha, sem criar o piloto.
+   * @throws IndexOutOfBoundsException caso a linha não exista.
+   */
+  public String getLicense(int row) {
+	checkRow(row);
+	return licenseAt(row);
+  }
+
+  /**
+   * Busca o piloto pelo CPF.
+   * 
+   * @return o piloto ou null caso o CPF não exista.
+   */
+  public Piloto lookup(long cpf) {
+	int linha = indexOf(cpf);
+	return linha < 0 ? null : get(linha);
+  }
+
+  /**
+   * @return a linha do CPF ou -1 caso ele não exista.
+   */
+  public int indexOf(long cpf) {
+	int mask = indexSlots - 1;
+	for (int i = hash(cpf) & mask; rowAt(i) != 0; i = (i + 1) & mask) {
+	  int linha = rowAt(i) - 1;
+	  /* uma posição de uma linha que não chegou a ser gravada é ignorada */
+	  if (indexKeys.getLong(i * INDEX_KEY_WIDTH) == cpf && linha < count && cpfAt(linha) == cpf)
+		return linha;
+	}
+	return -1;
+  }
+
+  /**
+   * Exerce uma ação para todos os pilotos, criando um {@link Piloto}
+   * para cada um.
+   * 
+   * @throws NullPointerException caso o consumer seja nulo. 
+   */
+  public void forEach(Iterateable<Piloto> consumer) {
+
+	if (consumer == null)
+	  throw new NullPointerException("Null consumer.");
+
+	for (int i = 0; i < count; i++) {
+	  consumer.execute(get(i));
+	}
+  }
+
+  /**
+   * Exerce uma ação para todas as linhas usando sempre a mesma
+   * {@link PilotStore.View}, sem criar objetos por piloto.
+   * 
+   * @throws NullPointerException caso o consumer seja nulo. 
+   */
+  public void forEachView(Iterateable<View> consumer) {
+
+	if (consumer == null)
+	  throw new NullPointerException("Null consumer.");
+
+	forEachView(0, count, consumer);
+  }
+
+  /**
+   * Igual ao {@link PilotStore#forEachView(Iterateable)}, só para as linhas
+   * de 'from' em diante, no máximo 'limit'. Usado para mostrar uma página.
+   * 
+   * @return a linha onde a próxima página começa.
+   * @throws NullPointerException caso o consumer seja nulo. 
+   */
+  public int forEachView(int from, int limit, Iterateable<View> consumer) {
+
+	if (consumer == null)
+	  throw new NullPointerException("Null consumer.");
+
+	int fim = (int) Math.min((long) Math.max(from, 0) + Math.max(limit, 0), count);
+	View view = new View();
+	for (int i = Math.max(from, 0); i < fim; i++) {
+	  view.row = i;
+	  consumer.execute(view);
+	}
+	return Math.max(fim, from);
+  }
+
+  /**
+   * @return Quantos pilotos o armazenamento tem.
+   */
+  public int size() {
+	return count;
+  }
+
+  /**
+   * Aumenta as colunas para caber 'rows' pilotos sem realocar.
+   * 
+   * @throws IllegalArgumentException caso passe do {@link PilotStore#MAX_CAPACITY}.
+   */
+  public void reserve(int rows) {
+
+	if (rows > MAX_CAPACITY)
+	  throw new IllegalArgumentException("Capacidade maior que o máximo de " + MAX_CAPACITY + " pilotos.");
+
+	ensureCapacity(rows, names.capacity());
+  }
+
+  /**
+   * @return Quantos pilotos cabem sem realocar as colunas.
+   */
+  public int capacity() {
+	return cpfs.capacity() / CPF_WIDTH;
+  }
+
+  /**
+   * @return quantos bytes as colunas ocupam fora da heap.
+   */
+  public long offHeapBytes() {
+	return (long) cpfs.capacity() + licenses.capacity() + nameEnds.capacity() + names.capacity()
+		+ indexKeys.capacity() + indexRows.capacity();
+  }
+
+  private long cpfAt(int row) {
+	return cpfs.getLong(row * CPF_WIDTH);
+  }
+
+  private String nameAt(int row) {
+	int inicio = nameEnd(row);
+	byte[] bytes = getBytes(names, inicio, nameEnds.getInt(row * OFFSET_WIDTH) - inicio);
+	return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private String licenseAt(int row) {
+	int posicao = row * LICENSE_WIDTH;
+	byte[] bytes = getBytes(licenses, posicao + 1, licenses.get(posicao));
+	return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return a posição onde o nome da linha passada começa, ou seja,
+   * onde o nome da linha anterior termina.
+   */
+  private int nameEnd(int row) {
+	return row == 0 ? 0 : nameEnds.getInt((row - 1) * OFFSET_WIDTH);
+  }
+
+  /**
+   * Garante que as colunas comportam a quantidade de linhas e de bytes
+   * de nomes passados, dobrando o que faltar.
+   */
+  private void ensureCapacity(int rows, int nameBytes) {
+	if (rows > capacity()) {
+	  int novaCapacidade = (int) Math.max(rows, Math.min(capacity() * 2L, MAX_CAPACITY));
+	  cpfs = allocator.reallocate(CPF_COLUMN, cpfs, columnBytes(novaCapacidade, CPF_WIDTH));
+	  licenses = allocator.reallocate(LICENSE_COLUMN, licenses, columnBytes(novaCapacidade, LICENSE_WIDTH));
+	  nameEnds = allocator.reallocate(NAME_END_COLUMN, nameEnds, columnBytes(novaCapacidade, OFFSET_WIDTH));
+	}
+	if (nameBytes > names.capacity()) {
+	  names = allocator.reallocate(NAME_COLUMN, names,
+		  (int) Math.max(nameBytes, Math.min(names.capacity() * 2L, Integer.MAX_VALUE)));
+	}
+  }
+
+  /**
+   * @return o tamanho da coluna para a quantidade de linhas.
+   * @throws IllegalArgumentException caso a coluna não caiba em um ByteBuffer.
+   */
+  private static int columnBytes(int rows, int width) {
+	try {
+	  return Math.multiplyExact(rows, width);
+	} catch (ArithmeticException e) {
+	  throw new IllegalArgumentException("Coluna com " + rows + " linhas maior que 2GB.", e);
+	}
+  }
+
+  private void indexRow(long cpf, int row) {
+	/* a linha já foi contada, então o índice refeito já inclui ela */
+	if (count * 2 > indexSlots) {
+	  rebuildIndex(indexSlots << 1);
+	  return;
+	}
+	insertIndex(cpf, row + 1);
+  }
+
+  /**
+   * Troca o índice por um com a quantidade de posições passada, indexando
+   * de novo todas as linhas.
+   */
+  private void rebuildIndex(int slots) {
+	indexKeys = allocator.reallocate(INDEX_KEY_COLUMN, indexKeys, columnBytes(slots, INDEX_KEY_WIDTH));
+	indexRows = allocator.reallocate(INDEX_ROW_COLUMN, indexRows, columnBytes(slots, INDEX_ROW_WIDTH));
+	indexSlots = slots;
+	for (int i = 0; i < indexRows.capacity(); i += INDEX_ROW_WIDTH) {
+	  indexRows.putInt(i, 0);
+	}
+	for (int linha = 0; linha < count; linha++) {
+	  insertIndex(cpfAt(linha), linha + 1);
+	}
+  }
+
+  private void insertIndex(long cpf, int rowPlusOne) {
+	int mask = indexSlots - 1;
+	int i = hash(cpf) & mask;
+	while (rowAt(i) != 0) {
+	  i = (i + 1) & mask;
+	}
+	indexKeys.putLong(i * INDEX_KEY_WIDTH, cpf);
+	indexRows.putInt(i * INDEX_ROW_WIDTH, rowPlusOne);
+  }
+
+  private int rowAt(int slot) {
+	return indexRows.getInt(slot * INDEX_ROW_WIDTH);
+  }
+
+  private static void putBytes(ByteBuffer column, int position, byte[] bytes) {
+	ByteBuffer destino = column.duplicate();
+	destino.position(position);
+	destino.put(bytes);
+  }
+
+  private static byte[] getBytes(ByteBuffer column, int position, int length) {
+	byte[] bytes = new byte[length];
+	ByteBuffer origem = column.duplicate();
+	origem.position(position);
+	origem.get(bytes);
+	return bytes;
+  }
+
+  private void checkRow(int row) {
+	if (row < 0 || row >= count)
+	  throw new IndexOutOfBoundsException(row + " fora dos limites.");
+  }
+
+  private static int hash(long key) {
+	long h = key * 0x9E3779B97F4A7C15L;
+	return (int) (h ^ (h >>> 32));
+  }
+
+  /**
+   * Colunas em memória direta, fora da heap.
+   */
+  private static final class DirectColumns implements ColumnAllocator {
+
+	private static final DirectColumns INSTANCE = new DirectColumns();
+
+	@Override
+	public ByteBuffer allocate(String column, int bytes) {
+	  return ByteBuffer.allocateDirect(bytes);
+	}
+
+	/**
+	 * Troca a coluna por uma maior, copiando os dados dela.
+	 */
+	@Override
+	public ByteBuffer reallocate(String column, ByteBuffer current, int bytes) {
+	  ByteBuffer nova = ByteBuffer.allocateDirect(bytes);
+	  ByteBuffer antiga = current.duplicate();
+	  antiga.clear();
+	  nova.put(antiga);
+	  nova.clear();
+	  return nova;
+	}
+  }
+
+  /**
+   * Visão de uma linha do {@link PilotStore}. A mesma instância é reaproveitada
+   * pelo {@link PilotStore#forEachView(Iterateable)}, então ela não deve ser
+   * guardada fora da iteração; use o {@link View#toPiloto()} para isso.
+   */
+  public final class View {
+
+	private int row;
+
+	public int getRow() {
+	  return row;
+	}
+
+	public long getCpfKey() {
+	  return cpfAt(row);
+	}
+
+	public String getName() {
+	  return nameAt(row);
+	}
+
+	public String getLicense() {
+	  return licenseAt(row);
+	}
+
+	public Piloto toPiloto() {
+	  return get(row);
+	}
+  }
+}
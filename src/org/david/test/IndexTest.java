@@ -0,0 +1,259 @@
+package org.david.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.david.exceptions.RegisterValidationException;
+import org.david.models.LicenseDictionary;
+import org.david.models.Pessoa;
+import org.david.models.Piloto;
+import org.david.utils.CodeIndex;
+import org.david.utils.Cpf;
+import org.david.utils.DataRegister;
+import org.david.utils.HashIndex;
+import org.david.utils.LongHashIndex;
+import org.david.utils.LongSkipListIndex;
+import org.david.utils.PrefixIndex;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste dos índices do Registrador.
+ * @author David Duarte Pinheiro
+ */
+class IndexTest {
+
+  @Test
+  void hashIndex_syncWithRegister() throws RegisterValidationException {
+
+	DataRegister<Piloto> registrador = new DataRegister<>();
+	HashIndex<String, Piloto> porCpf = new HashIndex<>(Pessoa::getCPF);
+	registrador.addIndex(porCpf);
+
+	for (int i = 0; i < 500; i++) {
+	  registrador.dynamicallyAdd(new Piloto(String.valueOf(i), "P" + i));
+	}
+
+	assertEquals(500, porCpf.size());
+	assertEquals("P42", porCpf.get("42").getName());
+	assertThrows(IllegalArgumentException.class, () -> registrador.dynamicallyAdd(new Piloto("42", "Outro")));
+	assertEquals(500, registrador.size());
+
+	registrador.removeIf(piloto -> Integer.parseInt(piloto.getCPF()) % 2 == 0);
+
+	assertEquals(250, porCpf.size());
+	assertNull(porCpf.get("42"));
+	for (int i = 1; i < 500; i += 2) {
+	  assertEquals("P" + i, porCpf.get(String.valueOf(i)).getName());
+	}
+
+	registrador.remove(porCpf.get("41"));
+	assertFalse(porCpf.containsKey("41"));
+
+	registrador.clear();
+	assertEquals(0, porCpf.size());
+	assertNull(porCpf.get("43"));
+  }
+
+  @Test
+  void longHashIndex_cpfLookup() throws RegisterValidationException {
+
+	assertEquals(52998224725L, Cpf.parse("529.982.247-25"));
+	assertTrue(Cpf.isValid(52998224725L));
+	assertFalse(Cpf.isValid(52998224726L));
+	assertFalse(Cpf.isValid(11111111111L));
+	assertEquals(Cpf.INVALID, Cpf.parse("abc"));
+	assertEquals("00012345678", Cpf.format(12345678L));
+
+	DataRegister<Piloto> registrador = new DataRegister<>();
+	LongHashIndex<Piloto> porCpf = new LongHashIndex<>(Piloto::getCpfKey);
+	registrador.addIndex(porCpf);
+
+	for (long cpf = 1; cpf <= 2000; cpf++) {
+	  registrador.dynamicallyAdd(new Piloto(cpf, "P" + cpf, "A"));
+	}
+
+	assertEquals("P1500", porCpf.get(1500L).getName());
+	assertEquals("00000001500", porCpf.get(1500L).getCPF());
+	assertThrows(IllegalArgumentException.class, () -> registrador.dynamicallyAdd(new Piloto(7L, "Outro", "B")));
+
+	registrador.removeIf(piloto -> piloto.getCpfKey() % 3 == 0);
+
+	assertEquals(1334, porCpf.size());
+	assertNull(porCpf.get(1500L));
+	for (long cpf = 1; cpf <= 2000; cpf++) {
+	  assertEquals(cpf % 3 != 0, porCpf.containsKey(cpf));
+	}
+  }
+
+  @Test
+  void prefixIndex_names() throws RegisterValidationException {
+
+	DataRegister<Piloto> registrador = new DataRegister<>();
+	PrefixIndex<Piloto> porNome = new PrefixIndex<>(Pessoa::getName);
+	registrador.addIndex(porNome);
+
+	String[] nomes = { "João", "Joana", "joão", "Jonas", "José", "Ana", "Anaís", "Bruno" };
+	for (int i = 0; i < nomes.length; i++) {
+	  registrador.dynamicallyAdd(new Piloto(i, nomes[i], "L"));
+	}
+
+	assertEquals(8, porNome.size());
+	assertEquals(5, porNome.startingWith("jo", 100).size());
+	assertEquals(3, porNome.startingWith("JOA", 100).size());
+	assertEquals(2, porNome.startingWith("joao", 100).size());
+	assertEquals(2, porNome.startingWith("Aná", 100).size());
+	assertEquals(2, porNome.startingWith("jo", 2).size());
+	assertEquals(8, porNome.startingWith("", 100).size());
+	assertTrue(porNome.startingWith("jos é", 100).isEmpty());
+	assertTrue(porNome.startingWith("Carla", 100).isEmpty());
+
+	/* remoções juntam os nós, as buscas continuam iguais */
+	registrador.removeIf(piloto -> piloto.getName().startsWith("Jo") && !piloto.getName().equals("Jonas"));
+	assertEquals(5, porNome.size());
+	assertEquals("joão", porNome.startingWith("joa", 100).get(0).getName());
+	assertEquals("Jonas", porNome.startingWith("jon", 100).get(0).getName());
+	assertEquals(2, porNome.startingWith("jo", 100).size());
+
+	registrador.clear();
+	assertEquals(0, porNome.size());
+	assertTrue(porNome.startingWith("", 100).isEmpty());
+
+	/* nomes iguais no mesmo nó, removidos pela posição guardada no piloto */
+	PrefixIndex<Piloto> comPosicao = new PrefixIndex<>(Pessoa::getName, Piloto.NAME_SLOT);
+	PrefixIndex<Piloto> outro = new PrefixIndex<>(Pessoa::getName, Piloto.NAME_SLOT);
+	Piloto[] iguais = new Piloto[1000];
+	for (int i = 0; i < iguais.length; i++) {
+	  iguais[i] = new Piloto(i, "Maria", "L");
+	  comPosicao.put(iguais[i]);
+	  outro.put(iguais[i]);
+	}
+	for (int i = 0; i < iguais.length; i += 2) {
+	  assertTrue(comPosicao.remove(iguais[i]));
+	}
+	assertFalse(comPosicao.remove(iguais[0]));
+	assertEquals(500, comPosicao.size());
+	for (Piloto piloto : comPosicao.startingWith("maria", 1000)) {
+	  assertEquals(1, piloto.getCpfKey() % 2);
+	}
+
+	/* a posição é do último índice, o outro procura no nó */
+	for (int i = 0; i < iguais.length; i += 3) {
+	  assertTrue(outro.remove(iguais[i]));
+	}
+	assertEquals(666, outro.size());
+	for (int i = 1; i < iguais.length; i += 2) {
+	  assertTrue(comPosicao.remove(iguais[i]));
+	}
+	assertEquals(0, comPosicao.size());
+	assertTrue(comPosicao.startingWith("", 100).isEmpty());
+  }
+
+  @Test
+  void skipListIndex_orderAndRanges() throws RegisterValidationException {
+
+	DataRegister<Piloto> registrador = new DataRegister<>();
+	LongSkipListIndex<Piloto> porCpf = new LongSkipListIndex<>(Pessoa::getCpfKey);
+	registrador.addIndex(porCpf);
+
+	/* chaves embaralhadas, 0 a 9999 */
+	for (int i = 0; i < 10_000; i++) {
+	  registrador.dynamicallyAdd(new Piloto((i * 7_919L) % 10_000, "P" + i, "L"));
+	}
+	assertEquals(10_000, porCpf.size());
+
+	long[] anterior = { -1 };
+	porCpf.forEach(piloto -> {
+	  assertEquals(anterior[0] + 1, piloto.getCpfKey());
+	  anterior[0] = piloto.getCpfKey();
+	});
+	assertEquals(9_999, anterior[0]);
+
+	List<Piloto> faixa = porCpf.range(100, 199, Integer.MAX_VALUE);
+	assertEquals(100, faixa.size());
+	assertEquals(100, faixa.get(0).getCpfKey());
+	assertEquals(199, faixa.get(99).getCpfKey());
+	assertEquals(10, porCpf.range(100, 199, 10).size());
+	assertEquals(500, porCpf.ceiling(500).getCpfKey());
+	assertNull(porCpf.ceiling(10_000));
+
+	registrador.removeIf(piloto -> piloto.getCpfKey() % 2 == 0);
+	assertEquals(5_000, porCpf.size());
+	assertEquals(50, porCpf.range(100, 199, Integer.MAX_VALUE).size());
+	assertEquals(501, porCpf.ceiling(500).getCpfKey());
+
+	registrador.clear();
+	assertEquals(0, porCpf.size());
+	assertNull(porCpf.ceiling(Long.MIN_VALUE));
+  }
+
+  @Test
+  void codeIndex_licenseCodes() throws RegisterValidationException {
+
+	LicenseDictionary dicionario = LicenseDictionary.shared();
+	int codigo = dicionario.intern("IDX-A");
+	assertEquals(codigo, dicionario.intern(new String("IDX-A")));
+	assertEquals(codigo, dicionario.codeOf("IDX-A"));
+	assertEquals(LicenseDictionary.NONE, dicionario.codeOf("IDX-INEXISTENTE"));
+	assertEquals(LicenseDictionary.NONE, dicionario.intern(null));
+	assertTrue(dicionario.contains(codigo));
+	assertFalse(dicionario.contains(dicionario.size()));
+	assertThrows(IllegalArgumentException.class, () -> new Piloto(1L, "Código solto", dicionario.size()));
+	assertThrows(IllegalArgumentException.class, () -> new Piloto(1L, "Código negativo", -2));
+
+	DataRegister<Piloto> registrador = new DataRegister<>();
+	CodeIndex<Piloto> porLicenca = new CodeIndex<>(Piloto::getLicenseCode);
+	registrador.addIndex(porLicenca);
+
+	for (int i = 0; i < 300; i++) {
+	  registrador.dynamicallyAdd(new Piloto(i, "P" + i, "IDX-" + (char) ('A' + i % 3)));
+	}
+	registrador.dynamicallyAdd(new Piloto("300", "Sem licença"));
+
+	Piloto primeiro = registrador.get(0);
+	assertEquals("IDX-A", primeiro.getLicense());
+	assertEquals(codigo, primeiro.getLicenseCode());
+	assertSame(primeiro.getLicense(), registrador.get(3).getLicense());
+	assertNull(registrador.get(300).getLicense());
+
+	assertEquals(100, porLicenca.count(codigo));
+	assertEquals(10, porLicenca.get(codigo, 10).size());
+	assertEquals(0, porLicenca.count(LicenseDictionary.NONE));
+
+	registrador.removeIf(piloto -> piloto.getCpfKey() < 150);
+	assertEquals(50, porLicenca.count(codigo));
+	long[] soma = { 0 };
+	porLicenca.forEach(codigo, Integer.MAX_VALUE, piloto -> {
+	  assertEquals("IDX-A", piloto.getLicense());
+	  soma[0] += piloto.getCpfKey();
+	});
+	/* 150, 153, ..., 297 */
+	assertEquals(50L * (150 + 297) / 2, soma[0]);
+	registrador.remove(registrador.get(0));
+	assertEquals(49, porLicenca.count(codigo));
+
+	registrador.clear();
+	assertEquals(0, porLicenca.count(codigo));
+
+	/* com a posição no piloto, inclusive num segundo índice com os mesmos pilotos */
+	DataRegister<Piloto> comPosicao = new DataRegister<>();
+	CodeIndex<Piloto> porPosicao = new CodeIndex<>(Piloto::getLicenseCode, Piloto.LICENSE_SLOT);
+	CodeIndex<Piloto> outro = new CodeIndex<>(Piloto::getLicenseCode, Piloto.LICENSE_SLOT);
+	comPosicao.addIndex(porPosicao);
+	for (int i = 0; i < 3000; i++) {
+	  Piloto piloto = new Piloto(i, "P" + i, "IDX-A");
+	  comPosicao.dynamicallyAdd(piloto);
+	  outro.indexed(piloto);
+	}
+	comPosicao.removeIf(piloto -> piloto.getCpfKey() % 2 == 0);
+	assertEquals(1500, porPosicao.count(codigo));
+	porPosicao.forEach(codigo, Integer.MAX_VALUE, piloto -> assertEquals(1, piloto.getCpfKey() % 2));
+
+	outro.unindexed(comPosicao.get(0));
+	outro.unindexed(new Piloto(2L, "Igual ao 2", "IDX-A"));
+	assertEquals(2998, outro.count(codigo));
+	comPosicao.removeIf(piloto -> true);
+	assertEquals(0, porPosicao.count(codigo));
+  }
+
+}
@@ -0,0 +1,92 @@
+package org.david.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.NoSuchElementException;
+
+import org.david.input.ByteInput;
+import org.david.input.Parsers;
+import org.david.utils.Options;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste da leitura do input.
+ * @author David Duarte Pinheiro
+ */
+class InputTest {
+
+  private static ByteInput input(String text, int bufferSize) {
+	return new ByteInput(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), bufferSize);
+  }
+
+  @Test
+  void byteInput_tokens() {
+
+	/* buffer pequeno para as palavras ficarem divididas entre leituras */
+	ByteInput input = input("  12\n-7\tJoão  9223372036854775807 -9223372036854775808\r\n"
+		+ "3.25 -0.5 1e3 abc 99999999999 7", 3);
+
+	assertEquals(Integer.valueOf(12), Parsers.INTEGER.parse(input.nextToken()));
+	assertEquals(Integer.valueOf(-7), Parsers.INTEGER.parse(input.nextToken()));
+	assertEquals("João", input.next());
+	assertEquals(Long.valueOf(Long.MAX_VALUE), Parsers.LONG.parse(input.nextToken()));
+	assertEquals(Long.valueOf(Long.MIN_VALUE), Parsers.LONG.parse(input.nextToken()));
+	assertEquals(Double.valueOf(3.25), Parsers.DOUBLE.parse(input.nextToken()));
+	assertEquals(Double.valueOf(-0.5), Parsers.DOUBLE.parse(input.nextToken()));
+	assertEquals(Double.valueOf(1000.0), Parsers.DOUBLE.parse(input.nextToken()));
+	assertNull(Parsers.INTEGER.parse(input.nextToken()));
+	assertNull(Parsers.INTEGER.parse(input.nextToken()));
+	assertEquals(Integer.valueOf(7), Parsers.INTEGER.parse(input.nextToken()));
+	assertFalse(input.hasNext());
+	assertThrows(NoSuchElementException.class, () -> input.next());
+  }
+
+  @Test
+  void parsers_withoutExceptions() {
+
+	assertEquals(Integer.valueOf(-42), Parsers.INTEGER.parse("-42"));
+	assertNull(Parsers.INTEGER.parse("2147483648"));
+	assertNull(Parsers.INTEGER.parse("12a"));
+	assertNull(Parsers.INTEGER.parse("-"));
+	assertEquals(Long.valueOf(Long.MIN_VALUE), Parsers.LONG.parse("-9223372036854775808"));
+	assertNull(Parsers.LONG.parse("9223372036854775808"));
+	assertEquals(Double.valueOf(1.5e-3), Parsers.DOUBLE.parse("1.5e-3"));
+	assertNull(Parsers.DOUBLE.parse("1.5e"));
+
+	/* os decimais simples são calculados sem String, igual ao parseDouble/parseFloat */
+	String[] decimais = { "0", "-0", "0.1", "-12.345", "+7.", ".5", "123456789012345", "1234567890123456",
+		"0.000000000000001", "3.4028235", "16777217", "0.3", "99.99e2" };
+	for (String decimal : decimais) {
+	  assertEquals(Double.valueOf(Double.parseDouble(decimal)), Parsers.DOUBLE.parse(decimal));
+	  assertEquals(Float.valueOf(Float.parseFloat(decimal)), Parsers.FLOAT.parse(decimal));
+	}
+	assertNull(Parsers.DOUBLE.parse("."));
+	assertNull(Parsers.DOUBLE.parse("\u0661\u0662"));
+	assertNull(Parsers.FLOAT.parse("1.\u0662"));
+	assertNull(Parsers.INTEGER.parse("\u0661"));
+	assertEquals(Long.valueOf(Long.MIN_VALUE), Parsers.LONG.parse("-009223372036854775808"));
+	assertNull(Parsers.LONG.parse("-9223372036854775809"));
+	assertEquals(Short.valueOf((short) -32768), Parsers.SHORT.parse("-32768"));
+	assertNull(Parsers.BYTE.parse("128"));
+	assertEquals(Long.valueOf(52998224725L), Parsers.CPF.parse("529.982.247-25"));
+	assertNull(Parsers.CPF.parse("529.982.247-26"));
+	assertEquals("ABC-123", Parsers.LICENSE.parse("abc-123"));
+	assertNull(Parsers.LICENSE.parse("ABC_123"));
+	assertEquals(LocalDate.of(2024, 2, 29), Parsers.DATE.parse("29/02/2024"));
+	assertNull(Parsers.DATE.parse("29/02/2023"));
+	assertSame(Parsers.INTEGER, Parsers.forType(Integer.class));
+	assertSame(Parsers.STRING, Parsers.forType(Object.class));
+	assertEquals(Long.class, Options.ask("cpf", "CPF: ", Long.class, Parsers.CPF).getRequiredType());
+
+	/* a visão reutilizada do ByteInput funciona com os conversores */
+	ByteInput input = input("17 x 18 Ação", 4);
+	assertEquals(Integer.valueOf(17), Parsers.INTEGER.parse(input.nextToken()));
+	assertNull(Parsers.INTEGER.parse(input.nextToken()));
+	assertEquals(Integer.valueOf(18), Parsers.INTEGER.parse(input.nextToken()));
+	assertEquals("Ação", Parsers.STRING.parse(input.nextToken()));
+  }
+
+}
@@ -0,0 +1,77 @@
+package org.david.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.david.input.ByteInput;
+import org.david.metrics.HistogramTracer;
+import org.david.metrics.LatencyHistogram;
+import org.david.options.DefaultOptionProperty;
+import org.david.options.Option;
+import org.david.utils.Keys;
+import org.junit.jupiter.api.Test;
+
+import static org.david.utils.Options.ask;
+import static org.david.utils.Options.create;
+import static org.david.utils.Options.of;
+
+/**
+ * Teste das métricas e dos tempos das opções.
+ * @author David Duarte Pinheiro
+ */
+class MetricsTest {
+
+  @Test
+  void latencyHistogram_percentiles() {
+
+	LatencyHistogram histograma = new LatencyHistogram();
+	for (long i = 1; i <= 1_000; i++) {
+	  histograma.record(i * 1_000);
+	}
+
+	assertEquals(1_000, histograma.count());
+	assertEquals(500_500.0, histograma.mean(), 0.001);
+	assertEquals(1_000_000, histograma.max());
+
+	/* erro relativo de no máximo 12,5% */
+	assertEquals(500_000, histograma.percentile(50), 500_000 * 0.125);
+	assertEquals(990_000, histograma.percentile(99), 990_000 * 0.125);
+	assertEquals(1_000_000, histograma.percentile(100));
+	assertTrue(histograma.percentile(50) >= 500_000);
+
+	histograma.record(3);
+	histograma.record(Long.MAX_VALUE);
+	assertEquals(Long.MAX_VALUE, histograma.max());
+
+	histograma.reset();
+	assertEquals(0, histograma.count());
+	assertEquals(0, histograma.percentile(99));
+  }
+
+  @Test
+  void histogramTracer_splitsInputAndHandler() {
+
+	HistogramTracer tracer = new HistogramTracer();
+	DefaultOptionProperty opcao = create(of(ask(Keys.NAME_KEY, "Nome: ", String.class)), handlerMap -> {
+	  return !"sair".equals(handlerMap.get(Keys.NAME_KEY));
+	}, "<Teste>");
+
+	ByteInput input = new ByteInput(new ByteArrayInputStream("a b sair".getBytes(StandardCharsets.UTF_8)));
+	assertTrue(Option.consumeOption(opcao, input, tracer));
+	assertTrue(Option.consumeOption(opcao, input, tracer));
+	assertFalse(Option.consumeOption(opcao, input, tracer));
+
+	assertEquals(3, tracer.inputWait("<Teste>").count());
+	assertEquals(3, tracer.handler("<Teste>").count());
+	assertNull(tracer.handler("<Outra>"));
+
+	/* opções sem separação contam tudo como execução */
+	Option<Boolean> simples = in -> true;
+	Option.consumeOption(simples, input, tracer);
+	assertEquals(0, tracer.inputWait("<sem descrição>").count());
+	assertEquals(1, tracer.handler("<sem descrição>").count());
+  }
+
+}
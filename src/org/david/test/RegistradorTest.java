@@ -2,12 +2,26 @@ package org.david.test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.StringWriter;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.david.PilotRegistry;
 import org.david.exceptions.RegisterValidationException;
+import org.david.metrics.RegisterMetrics;
 import org.david.models.Pessoa;
 import org.david.models.Piloto;
+import org.david.utils.CapacityPolicies;
+import org.david.utils.ConcurrentDataRegister;
+import org.david.utils.Cpf;
 import org.david.utils.DataRegister;
+import org.david.utils.HashIndex;
+import org.david.utils.Options;
+import org.david.utils.RegisterQuery;
 import org.david.utils.Utils;
 import org.junit.jupiter.api.Test;
 
@@ -75,6 +89,437 @@ class RegistradorTest {
 	assertEquals(0, registrador.size());
   }
   
+  @Test
+  void dataRegister_dynamicallyAdd() throws RegisterValidationException {
+
+	DataRegister<Integer> registrador = new DataRegister<>();
+
+	for (int i = 0; i < 1000; i++) {
+	  registrador.dynamicallyAdd(i);
+	}
+
+	assertEquals(1000, registrador.size());
+	assertEquals(1024, registrador.capacity());
+
+	for (int i = 0; i < 1000; i++) {
+	  assertEquals(Integer.valueOf(i), registrador.get(i));
+	}
+
+	registrador.remove(0);
+	registrador.dynamicallyAdd(1000);
+
+	assertEquals(Integer.valueOf(1), registrador.get(0));
+	assertEquals(Integer.valueOf(1000), registrador.get(999));
+  }
+
+  @Test
+  void dataRegister_removeIf() {
+
+	DataRegister<Integer> registrador = new DataRegister<>(10);
+	for (int i = 0; i < 10; i++) {
+	  registrador.add(i);
+	}
+
+	assertTrue(registrador.removeIf(i -> i % 3 == 0));
+	assertFalse(registrador.removeIf(i -> i > 100));
+	assertEquals(6, registrador.size());
+
+	Integer[] esperado = { 1, 2, 4, 5, 7, 8 };
+	for (int i = 0; i < esperado.length; i++) {
+	  assertEquals(esperado[i], registrador.get(i));
+	}
+	assertFalse(registrador.valid(6));
+
+	registrador.removeAll(Arrays.asList(1, 8));
+	registrador.retainAll(Arrays.asList(2, 5, 9));
+
+	assertEquals(2, registrador.size());
+	assertEquals(Integer.valueOf(2), registrador.get(0));
+	assertEquals(Integer.valueOf(5), registrador.get(1));
+  }
+
+  @Test
+  void dataRegister_removeIfFailingFilter() {
+
+	DataRegister<Integer> registrador = new DataRegister<>(10);
+	HashIndex<Integer, Integer> indice = new HashIndex<>(i -> i);
+	registrador.addIndex(indice);
+	for (int i = 0; i < 10; i++) {
+	  registrador.add(i);
+	}
+
+	int[] chamadas = { 0 };
+	assertThrows(IllegalStateException.class, () -> registrador.removeIf(i -> {
+	  chamadas[0]++;
+	  if (i == 5)
+		throw new IllegalStateException("falha no filtro");
+	  return i == 1;
+	}));
+
+	/* o filtro roda uma vez por elemento analisado e os mantidos não se perdem */
+	assertEquals(6, chamadas[0]);
+	assertEquals(9, registrador.size());
+	Integer[] esperado = { 0, 2, 3, 4, 5, 6, 7, 8, 9 };
+	for (int i = 0; i < esperado.length; i++) {
+	  assertEquals(esperado[i], registrador.get(i));
+	}
+	assertEquals(9, indice.size());
+	assertNull(indice.get(1));
+	assertEquals(Integer.valueOf(4), indice.get(4));
+  }
+
+  @Test
+  void dataRegister_snapshotIteration() throws RegisterValidationException {
+
+	DataRegister<Integer> registrador = new DataRegister<>();
+	registrador.setSnapshotIteration(true);
+	for (int i = 0; i < 10; i++) {
+	  registrador.dynamicallyAdd(i);
+	}
+
+	int[] soma = { 0 };
+	registrador.forEach(i -> {
+	  soma[0] += i;
+	  try {
+		registrador.remove(i);
+		registrador.dynamicallyAdd(100 + i);
+	  } catch (RegisterValidationException e) {
+		throw new IllegalStateException(e);
+	  }
+	});
+
+	assertEquals(45, soma[0]);
+	assertEquals(10, registrador.size());
+	assertEquals(Integer.valueOf(100), registrador.get(0));
+	assertEquals(Integer.valueOf(109), registrador.get(9));
+
+	/* dois leitores ao mesmo tempo: o de fora continua na versão dele depois que o de dentro termina */
+	int[] externo = { 0 };
+	registrador.forEach(i -> {
+	  externo[0] += i;
+	  if (i == 100) {
+		registrador.forEach(j -> {});
+		registrador.removeIf(j -> j >= 105);
+	  }
+	});
+	assertEquals(1045, externo[0]);
+	assertEquals(5, registrador.size());
+	registrador.removeIf(j -> j == 100);
+	assertEquals(Integer.valueOf(101), registrador.get(0));
+  }
+
+  @Test
+  void dataRegister_pagedIteration() throws RegisterValidationException {
+
+	DataRegister<Integer> registrador = new DataRegister<>();
+	for (int i = 0; i < 25; i++) {
+	  registrador.dynamicallyAdd(i);
+	}
+
+	int[] soma = { 0 };
+	int paginas = 0;
+	int cursor = 0;
+	while (cursor < registrador.size()) {
+	  cursor = registrador.forEach(cursor, 10, i -> soma[0] += i);
+	  paginas++;
+	}
+
+	assertEquals(3, paginas);
+	assertEquals(300, soma[0]);
+	assertEquals(25, registrador.forEach(40, 10, i -> soma[0] += i));
+	assertThrows(IllegalArgumentException.class, () -> registrador.forEach(-1, 10, i -> {}));
+  }
+
+  @Test
+  void dataRegister_streams() throws RegisterValidationException {
+
+	DataRegister<Integer> registrador = new DataRegister<>();
+	for (int i = 0; i < 10_000; i++) {
+	  registrador.dynamicallyAdd(i);
+	}
+
+	Spliterator<Integer> spliterator = registrador.spliterator();
+	assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+	Spliterator<Integer> metade = spliterator.trySplit();
+	assertEquals(5_000, metade.estimateSize());
+	assertEquals(5_000, spliterator.estimateSize());
+
+	assertEquals(49_995_000L, registrador.parallelStream().mapToLong(Integer::longValue).sum());
+	assertEquals(5_000, registrador.stream().filter(i -> i % 2 == 0).count());
+
+	/* a stream enxerga a versão do momento em que foi criada */
+	Iterator<Integer> iterator = registrador.iterator();
+	registrador.remove(0);
+	assertEquals(Integer.valueOf(0), iterator.next());
+	assertEquals(9_999, registrador.stream().count());
+
+	int soma = 0;
+	for (Integer i : registrador) {
+	  soma += i;
+	}
+	assertEquals(49_995_000, soma);
+  }
+
+  @Test
+  void registerQuery_parallelSearch() throws RegisterValidationException {
+
+	DataRegister<Piloto> registrador = new DataRegister<>();
+	for (int i = 0; i < 100_000; i++) {
+	  registrador.dynamicallyAdd(new Piloto(i, (i % 10 == 0 ? "Ana " : "Bruno ") + i, i % 3 == 0 ? "A" : "B"));
+	}
+
+	List<Long> cpfs = RegisterQuery.over(registrador)
+		.where(Options.pilotFilter("a", "ANA"))
+		.select(Piloto::getCpfKey);
+	assertEquals(3_334, cpfs.size());
+	for (int i = 1; i < cpfs.size(); i++) {
+	  assertTrue(cpfs.get(i - 1) < cpfs.get(i));
+	}
+
+	assertEquals(50, RegisterQuery.over(registrador).where(Options.pilotFilter(Options.ANY, "bruno")).limit(50).count());
+	assertEquals(0, RegisterQuery.over(registrador).where(pilot -> false).count());
+	assertEquals(100_000, RegisterQuery.over(registrador).count());
+  }
+
+  @Test
+  void dataRegister_uniqueMode() throws RegisterValidationException {
+
+	DataRegister<Pessoa> registrador = new DataRegister<>();
+	registrador.dynamicallyAdd(new Piloto("529.982.247-25", "Ana"));
+	registrador.setUniqueKey(Pessoa::getCpfKey);
+	assertTrue(registrador.isUnique());
+
+	for (int i = 1; i <= 1_000; i++) {
+	  registrador.dynamicallyAdd(new Piloto(Cpf.withCheckDigits(i), "P" + i, "L"));
+	}
+
+	/* mesmo CPF, formatado de outro jeito */
+	assertEquals(new Piloto("52998224725", "Outra"), registrador.get(0));
+	assertTrue(registrador.contains(new Piloto(52998224725L, "Outra", "L")));
+	assertThrows(IllegalArgumentException.class, () -> registrador.dynamicallyAdd(new Piloto(52998224725L, "Outra", "L")));
+	assertThrows(IllegalArgumentException.class, () -> registrador.add(new Piloto(Cpf.withCheckDigits(7), "P7", "L")));
+	assertEquals(1_001, registrador.size());
+
+	registrador.remove(new Piloto("52998224725", "Ana"));
+	assertFalse(registrador.contains(new Piloto(52998224725L, "Ana", "L")));
+	registrador.dynamicallyAdd(new Piloto(52998224725L, "Ana", "L"));
+	assertEquals(1_001, registrador.size());
+
+	DataRegister<Pessoa> repetidos = new DataRegister<>();
+	repetidos.dynamicallyAdd(new Piloto("123", "A"));
+	repetidos.dynamicallyAdd(new Piloto("123", "B"));
+	assertThrows(IllegalArgumentException.class, () -> repetidos.setUniqueKey(Pessoa::getCpfKey));
+  }
+
+  @Test
+  void registerMetrics_counters() {
+
+	int[] tamanho = { 3 };
+	RegisterMetrics metricas = new RegisterMetrics("teste", () -> tamanho[0], () -> 4);
+	metricas.added(3);
+	metricas.searched(2);
+	metricas.searched(4);
+	metricas.removed(1, 3);
+	metricas.expanded(10);
+
+	assertEquals(3, metricas.getAdds());
+	assertEquals(3.0, metricas.getAverageContainsScan(), 0);
+	assertEquals(3.0, metricas.getAverageRemoveScan(), 0);
+	/* uma remoção que não acha nada conta como chamada, sem elemento removido */
+	metricas.removed(0, 4);
+	assertEquals(1, metricas.getRemoves());
+	assertEquals(2, metricas.getRemoveCalls());
+	assertEquals(3.5, metricas.getAverageRemoveScan(), 0);
+	assertEquals(10L * RegisterMetrics.REFERENCE_BYTES, metricas.getBytesCopied());
+	assertEquals(0.75, metricas.getFillRatio(), 0);
+
+	metricas.reset();
+	assertEquals(0, metricas.getAdds());
+	assertEquals(0.0, metricas.getAverageContainsScan(), 0);
+  }
+
+  @Test
+  void capacityPolicies_growAndShrink() throws RegisterValidationException {
+
+	assertEquals(15, CapacityPolicies.fixed(5).grow(10, 11));
+	assertEquals(25, CapacityPolicies.fixed(5).grow(10, 22));
+	assertEquals(20, CapacityPolicies.multiplicative(2).grow(10, 11));
+	assertEquals(4, CapacityPolicies.multiplicative(1.5).grow(2, 3));
+	assertEquals(13, CapacityPolicies.fibonacci().grow(8, 9));
+	assertEquals(12, CapacityPolicies.bounded(CapacityPolicies.multiplicative(2), 12).grow(10, 11));
+	assertThrows(IndexOutOfBoundsException.class,
+		() -> CapacityPolicies.bounded(CapacityPolicies.fibonacci(), 12).grow(12, 13));
+
+	DataRegister<Integer> registrador = new DataRegister<>(4,
+		CapacityPolicies.shrinking(CapacityPolicies.DEFAULT, 0.25, 0.5, 4));
+	for (int i = 0; i < 1_000; i++) {
+	  registrador.dynamicallyAdd(i);
+	}
+	assertEquals(1_024, registrador.capacity());
+
+	/* só diminui abaixo de 25%, voltando para 50% de ocupação */
+	registrador.removeIf(i -> i >= 300);
+	assertEquals(1_024, registrador.capacity());
+	registrador.removeIf(i -> i >= 200);
+	assertEquals(400, registrador.capacity());
+	assertEquals(Integer.valueOf(199), registrador.get(199));
+
+	registrador.clear();
+	assertEquals(4, registrador.capacity());
+
+	registrador.dynamicallyAdd(1);
+	registrador.trimToSize();
+	assertEquals(1, registrador.capacity());
+	/* o add continua com capacidade fixa, quem precisa crescer usa o dynamicallyAdd */
+	assertThrows(IndexOutOfBoundsException.class, () -> registrador.add(2));
+	registrador.dynamicallyAdd(2);
+	assertEquals(2, registrador.size());
+
+	/* cadastro depois de compactar a lista dos pilotos */
+	PilotRegistry pilotos = new PilotRegistry(4);
+	pilotos.register(new Piloto(52998224725L, "Ana", "PC"));
+	pilotos.trimToSize();
+	assertEquals(1, pilotos.capacity());
+	pilotos.register(new Piloto(11144477735L, "Bia", "PP"));
+	assertEquals(2, pilotos.size());
+	assertEquals("Bia", pilotos.findByCpf(11144477735L).getName());
+  }
+
+  @Test
+  void concurrentDataRegister_producers() throws Exception {
+
+	ConcurrentDataRegister<Integer> registrador = new ConcurrentDataRegister<>();
+	Thread[] produtores = new Thread[8];
+
+	for (int t = 0; t < produtores.length; t++) {
+	  final int base = t * 10_000;
+	  produtores[t] = new Thread(() -> {
+		for (int i = 0; i < 10_000; i++) {
+		  try {
+			registrador.dynamicallyAdd(base + i);
+		  } catch (RegisterValidationException e) {
+			throw new IllegalStateException(e);
+		  }
+		}
+	  });
+	  produtores[t].start();
+	}
+	for (Thread produtor : produtores) {
+	  produtor.join();
+	}
+
+	assertEquals(80_000, registrador.size());
+
+	boolean[] vistos = new boolean[80_000];
+	registrador.forEach(i -> vistos[i] = true);
+	for (boolean visto : vistos) {
+	  assertTrue(visto);
+	}
+
+	registrador.remove(42);
+	assertFalse(registrador.contains(42));
+	assertEquals(79_999, registrador.size());
+
+	registrador.clear();
+	assertTrue(registrador.isEmpty());
+  }
+
+  @Test
+  void concurrentDataRegister_reusesSlots() throws RegisterValidationException {
+
+	ConcurrentDataRegister<Integer> registrador = new ConcurrentDataRegister<>(4);
+	for (int i = 0; i < 4; i++) {
+	  registrador.add(i);
+	}
+	assertThrows(IndexOutOfBoundsException.class, () -> registrador.add(4));
+
+	/* as posições não são densas: a removida fica nula até compactar */
+	registrador.remove(1);
+	assertNull(registrador.get(1));
+	assertEquals(Integer.valueOf(2), registrador.get(2));
+
+	/* cheia com uma posição removida: o add compacta e reaproveita */
+	registrador.add(4);
+	assertEquals(4, registrador.size());
+	assertEquals(Integer.valueOf(2), registrador.get(1));
+	assertEquals(Integer.valueOf(4), registrador.get(3));
+
+	/* ciclos de adição e remoção não esgotam a lista */
+	for (int i = 0; i < 1000; i++) {
+	  registrador.remove(registrador.get(0) != null ? registrador.get(0) : registrador.get(1));
+	  registrador.add(100 + i);
+	}
+	assertEquals(4, registrador.size());
+
+	registrador.clear();
+	assertEquals(0, registrador.size());
+	for (int i = 0; i < 4; i++) {
+	  registrador.add(i);
+	}
+	assertEquals(4, registrador.size());
+	assertEquals(Integer.valueOf(0), registrador.get(0));
+
+	registrador.remove(0);
+	registrador.compact();
+	assertEquals(Integer.valueOf(1), registrador.get(0));
+	assertThrows(IndexOutOfBoundsException.class, () -> registrador.get(3));
+  }
+
+  @Test
+  void concurrentDataRegister_appendsDuringCompaction() throws Exception {
+
+	ConcurrentDataRegister<Integer> registrador = new ConcurrentDataRegister<>();
+	AtomicBoolean produzindo = new AtomicBoolean(true);
+	AtomicInteger compactacoes = new AtomicInteger();
+
+	/* compacta sem parar enquanto os produtores adicionam e removem */
+	Thread compactador = new Thread(() -> {
+	  while (produzindo.get()) {
+		registrador.compact();
+		compactacoes.incrementAndGet();
+	  }
+	});
+	compactador.start();
+
+	Thread[] produtores = new Thread[8];
+	for (int t = 0; t < produtores.length; t++) {
+	  final int base = t * 20_000;
+	  produtores[t] = new Thread(() -> {
+		try {
+		  for (int i = 0; i < 20_000; i++) {
+			registrador.dynamicallyAdd(base + i);
+			/* um em cada dez sai logo depois de entrar */
+			if (i % 10 == 0)
+			  registrador.remove(base + i);
+		  }
+		} catch (RegisterValidationException e) {
+		  throw new IllegalStateException(e);
+		}
+	  });
+	  produtores[t].start();
+	}
+	for (Thread produtor : produtores) {
+	  produtor.join();
+	}
+	int durante = compactacoes.get();
+	produzindo.set(false);
+	compactador.join();
+	assertTrue(durante > 0);
+
+	/* nenhuma adição perdida ou duplicada, nenhuma remoção desfeita */
+	assertEquals(144_000, registrador.size());
+	int[] vistos = new int[160_000];
+	registrador.forEach(i -> vistos[i]++);
+	for (int i = 0; i < vistos.length; i++) {
+	  assertEquals(i % 10 == 0 ? 0 : 1, vistos[i]);
+	}
+
+	registrador.compact();
+	assertEquals(144_000, registrador.size());
+	assertNotNull(registrador.get(143_999));
+	assertThrows(IndexOutOfBoundsException.class, () -> registrador.get(144_000));
+  }
+
   @Test
   void utils_stringJoiner() {
 	
@@ -86,4 +531,19 @@ class RegistradorTest {
 	registrador.see("Test->");
   }
 
+  @Test
+  void utils_appendableJoin() throws Exception {
+
+	DataRegister<Integer> registrador = new DataRegister<>();
+	for (int i = 0; i < 1000; i++) {
+	  registrador.dynamicallyAdd(i);
+	}
+
+	StringWriter out = Utils.join(new StringWriter(), registrador, ",");
+	assertEquals(Utils.join(registrador, ","), out.toString());
+	assertTrue(out.toString().startsWith("0,1,2,"));
+	assertTrue(out.toString().endsWith(",998,999"));
+	assertEquals("", Utils.join(new DataRegister<Integer>(), ","));
+  }
+
 }
@@ -0,0 +1,107 @@
+package org.david.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.david.PilotRegistry;
+import org.david.server.PilotServer;
+import org.david.utils.Cpf;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste do servidor dos pilotos.
+ * @author David Duarte Pinheiro
+ */
+class ServerTest {
+
+  @Test
+  void pilotServer_concurrentSessions() throws Exception {
+
+	final int SESSOES = 64;
+	/* bem menor que o número de cadastros, a lista precisa crescer */
+	PilotRegistry registro = new PilotRegistry(8);
+	PrintStream saidaOriginal = System.out;
+	PilotServer servidor = PilotServer.open(registro, 0);
+	Thread aceitando = new Thread(() -> {
+	  try {
+		servidor.serve();
+	  } catch (IOException e) {
+		e.printStackTrace();
+	  }
+	});
+	aceitando.start();
+
+	ExecutorService clientes = Executors.newFixedThreadPool(16);
+	try {
+	  List<Future<String>> respostas = new ArrayList<>();
+	  for (int i = 0; i < SESSOES; i++) {
+		String comandos = "0\nPiloto" + i + "\n" + Cpf.format(Cpf.withCheckDigits(100_000 + i)) + "\nSRV-" + (i % 4) + "\n";
+		respostas.add(clientes.submit(session(servidor.getPort(), comandos)));
+	  }
+	  for (Future<String> resposta : respostas) {
+		assertTrue(resposta.get().contains("Novo piloto adicionado"));
+	  }
+	  assertEquals(SESSOES, registro.size());
+	  assertTrue(registro.capacity() >= SESSOES);
+
+	  /* outra sessão enxerga os cadastros das anteriores */
+	  String resposta = session(servidor.getPort(), "4\n" + Cpf.format(Cpf.withCheckDigits(100_007)) + "\n").call();
+	  assertTrue(resposta.contains("name=Piloto7"));
+	  assertEquals(16, registro.withLicense("srv-3", Integer.MAX_VALUE).size());
+
+	  /* os tempos de todas as sessões ficam no tracer do servidor */
+	  assertEquals(SESSOES, servidor.getTracer().handler("<Cadastrar novo piloto>").count());
+	  assertTrue(resposta.contains("Digite o CPF para consulta"));
+
+	  /* as sessões não importam arquivos do servidor nem mudam a capacidade da lista */
+	  String semImportar = session(servidor.getPort(), "7\n/etc/passwd\n").call();
+	  assertFalse(semImportar.contains("Importar"));
+	  assertFalse(semImportar.contains("Expandir"));
+	  assertFalse(semImportar.contains("Digite o caminho do arquivo"));
+	  assertTrue(semImportar.contains("SRV-3: 16"));
+	} finally {
+	  clientes.shutdown();
+	  servidor.close();
+	}
+
+	aceitando.join(5_000);
+	assertFalse(aceitando.isAlive());
+	/* as sessões escrevem no socket, o System.out nunca é trocado */
+	assertSame(saidaOriginal, System.out);
+  }
+
+  /**
+   * Manda os comandos, fecha a escrita e devolve tudo o que a sessão respondeu.
+   */
+  private static Callable<String> session(int port, String comandos) {
+	return () -> {
+	  try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+		socket.getOutputStream().write(comandos.getBytes(StandardCharsets.UTF_8));
+		socket.shutdownOutput();
+
+		ByteArrayOutputStream resposta = new ByteArrayOutputStream();
+		InputStream in = socket.getInputStream();
+		byte[] buffer = new byte[4096];
+		int lidos;
+		while ((lidos = in.read(buffer)) != -1) {
+		  resposta.write(buffer, 0, lidos);
+		}
+		return new String(resposta.toByteArray(), StandardCharsets.UTF_8);
+	  }
+	};
+  }
+
+}
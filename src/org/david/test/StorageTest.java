@@ -0,0 +1,490 @@
+package org.david.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.david.PilotRegistry;
+import org.david.models.Piloto;
+import org.david.storage.MappedPilotStore;
+import org.david.storage.PilotImporter;
+import org.david.storage.PilotJournal;
+import org.david.storage.PilotStore;
+import org.david.utils.Cpf;
+import org.david.utils.DataRegister;
+import org.david.utils.LongHashIndex;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste do armazenamento dos pilotos.
+ * @author David Duarte Pinheiro
+ */
+class StorageTest {
+
+  @Test
+  void pilotStore_columns() {
+
+	PilotStore store = new PilotStore(2);
+
+	for (long cpf = 1; cpf <= 1000; cpf++) {
+	  store.add(new Piloto(cpf, "Piloto nº " + cpf, cpf % 2 == 0 ? "PP" : "PC"));
+	}
+
+	assertEquals(1000, store.size());
+	assertTrue(store.capacity() >= 1000);
+
+	Piloto piloto = store.lookup(500L);
+	assertEquals("Piloto nº 500", piloto.getName());
+	assertEquals("PP", piloto.getLicense());
+	assertEquals(500L, piloto.getCpfKey());
+	assertNull(store.lookup(1001L));
+
+	assertThrows(IllegalArgumentException.class, () -> store.add(new Piloto(500L, "Outro", "PP")));
+	assertThrows(IllegalArgumentException.class, () -> store.add(new Piloto(2000L, "Outro", "LICENÇA MUITO GRANDE")));
+
+	long[] soma = { 0 };
+	store.forEachView(view -> soma[0] += view.getCpfKey());
+	assertEquals(500500L, soma[0]);
+	assertEquals("Piloto nº 1", store.get(0).getName());
+  }
+
+  @Test
+  void mappedPilotStore_reopen() throws IOException {
+
+	Path base = Files.createTempDirectory("pilotos").resolve("pilotos");
+
+	try (MappedPilotStore store = MappedPilotStore.open(base, 4)) {
+	  for (long cpf = 1; cpf <= 100; cpf++) {
+		store.add(new Piloto(cpf, "P" + cpf, "PC"));
+	  }
+	}
+
+	try (MappedPilotStore store = MappedPilotStore.open(base, 4)) {
+	  assertEquals(100, store.size());
+	  assertEquals("P77", store.lookup(77L).getName());
+	  assertThrows(IllegalArgumentException.class, () -> store.add(new Piloto(77L, "Outro", "PC")));
+	  store.add(new Piloto(101L, "P101", "PP"));
+	}
+
+	try (MappedPilotStore store = MappedPilotStore.open(base, 4)) {
+	  assertEquals(101, store.size());
+	  assertEquals("PP", store.lookup(101L).getLicense());
+	}
+
+	/* sem os arquivos do índice (ex.: uma versão anterior) ele é refeito */
+	Files.delete(base.resolveSibling("pilotos.cpf-index"));
+	Files.delete(base.resolveSibling("pilotos.cpf-index-row"));
+	try (MappedPilotStore store = MappedPilotStore.open(base, 4)) {
+	  assertEquals(50, store.indexOf(51L));
+	  assertNull(store.lookup(500L));
+	  assertThrows(IllegalArgumentException.class, () -> store.add(new Piloto(1L, "Outro", "PC")));
+	}
+  }
+
+  @Test
+  void mappedPilotStore_countOnlyAfterForce() throws IOException {
+
+	Path base = Files.createTempDirectory("pilotos").resolve("pilotos");
+
+	/* sem force, os pilotos não contam ao reabrir: as páginas podem não estar no disco */
+	try (MappedPilotStore store = MappedPilotStore.open(base, 4)) {
+	  for (long cpf = 1; cpf <= 3; cpf++) {
+		store.add(new Piloto(cpf, "P" + cpf, "PC"));
+	  }
+	  store.force();
+	  store.add(new Piloto(4L, "P4", "PC"));
+	  store.add(new Piloto(5L, "P5", "PC"));
+
+	  try (MappedPilotStore reaberto = MappedPilotStore.open(base, 4)) {
+		assertEquals(3, reaberto.size());
+		assertEquals("P3", reaberto.lookup(3L).getName());
+		assertNull(reaberto.lookup(4L));
+		assertEquals(-1, reaberto.indexOf(5L));
+	  }
+	}
+
+	try (MappedPilotStore store = MappedPilotStore.open(base, 4)) {
+	  assertEquals(5, store.size());
+	  assertEquals("P5", store.lookup(5L).getName());
+	}
+
+	/* capacidades que não cabem nas colunas são recusadas antes de alocar */
+	assertThrows(IllegalArgumentException.class, () -> new PilotStore(PilotStore.MAX_CAPACITY + 1));
+	assertThrows(IllegalArgumentException.class, () -> new PilotStore(Integer.MAX_VALUE));
+	assertTrue((long) PilotStore.MAX_CAPACITY * PilotStore.LICENSE_WIDTH <= Integer.MAX_VALUE);
+  }
+
+  @Test
+  void pilotRegistry_lazyLoad() throws IOException {
+
+	Path base = Files.createTempDirectory("pilotos").resolve("pilotos");
+
+	try (MappedPilotStore store = MappedPilotStore.open(base, 4)) {
+	  for (long cpf = 1; cpf <= 100; cpf++) {
+		store.add(new Piloto(cpf, "P" + cpf, "PC"));
+	  }
+	}
+
+	PilotRegistry registro = new PilotRegistry(4, MappedPilotStore.open(base, 4), null);
+	try {
+	  /* reabrir, consultar, listar e cadastrar pelo CPF não montam os índices */
+	  assertFalse(registro.isIndexed());
+	  assertEquals(100, registro.size());
+	  assertEquals("P42", registro.findByCpf(42L).getName());
+	  registro.register(new Piloto(101L, "Novo", "PC"));
+	  assertThrows(IllegalArgumentException.class, () -> registro.register(new Piloto(7L, "Outro", "PC")));
+	  List<String> pagina = new ArrayList<>();
+	  assertEquals(101, registro.forEach(96, 10, pilot -> pagina.add(pilot.getName())));
+	  assertEquals(Arrays.asList("P97", "P98", "P99", "P100", "Novo"), pagina);
+	  assertFalse(registro.isIndexed());
+	  assertEquals(101, registro.size());
+	  assertThrows(IllegalStateException.class, registro::getPilots);
+
+	  /* a primeira consulta que precisa dos índices coloca todas as linhas neles */
+	  assertEquals(1, registro.startingWith("Nov", 10).size());
+	  assertTrue(registro.isIndexed());
+	  assertEquals(101, registro.size());
+	  assertEquals("P7", registro.findByCpf(7L).getName());
+
+	  /* depois de montados, os índices acompanham os cadastros */
+	  registro.register(new Piloto(0L, "Nova", "XY"));
+	  assertEquals(2, registro.startingWith("Nov", 10).size());
+	  assertEquals("Nova", registro.ceiling(0L).getName());
+	  assertEquals(1, registro.withLicense("xy", 10).size());
+	  assertEquals(5, registro.range(10L, 14L, 10, pilot -> { }));
+	  assertEquals(1, registro.query(pilot -> pilot.getName().equals("P50"), 10).size());
+	} finally {
+	  registro.close();
+	}
+  }
+
+  @Test
+  void pilotJournal_groupCommitAndReplay() throws Exception {
+
+	Path arquivo = Files.createTempDirectory("pilotos").resolve("pilotos.journal");
+
+	try (PilotJournal journal = PilotJournal.open(arquivo)) {
+	  Thread[] threads = new Thread[8];
+	  CountDownLatch largada = new CountDownLatch(1);
+	  for (int t = 0; t < threads.length; t++) {
+		final long base = t * 100;
+		threads[t] = new Thread(() -> {
+		  try {
+			largada.await();
+			for (long cpf = base; cpf < base + 100; cpf++) {
+			  journal.append(new Piloto(cpf, "P" + cpf, "PC"));
+			}
+		  } catch (IOException | InterruptedException e) {
+			throw new IllegalStateException(e);
+		  }
+		});
+		threads[t].start();
+	  }
+	  largada.countDown();
+	  for (Thread thread : threads) {
+		thread.join();
+	  }
+	  assertTrue(journal.forces() >= 1);
+	  assertEquals(800L, journal.recordsSinceCheckpoint());
+	}
+
+	/* simula uma queda no meio da gravação de um registro */
+	Files.write(arquivo, new byte[] { 0, 0, 0, 40, 1, 2 }, StandardOpenOption.APPEND);
+
+	boolean[] vistos = new boolean[800];
+	try (PilotJournal journal = PilotJournal.open(arquivo)) {
+	  assertEquals(800, journal.replay(piloto -> vistos[(int) piloto.getCpfKey()] = true));
+	  journal.append(new Piloto(800L, "P800", "PC"));
+	}
+	for (boolean visto : vistos) {
+	  assertTrue(visto);
+	}
+
+	try (PilotJournal journal = PilotJournal.open(arquivo)) {
+	  assertEquals(801, journal.replay(piloto -> {}));
+	  journal.checkpoint(() -> {});
+	  assertEquals(0L, journal.recordsSinceCheckpoint());
+	  assertEquals(0, journal.replay(piloto -> {}));
+	}
+  }
+
+  @Test
+  void pilotJournal_groupsWaitingWriters() throws Exception {
+
+	Path arquivo = Files.createTempDirectory("pilotos").resolve("pilotos.journal");
+	CountDownLatch forcando = new CountDownLatch(1);
+	CountDownLatch liberar = new CountDownLatch(1);
+	FileChannel canal = new SlowForceChannel(FileChannel.open(arquivo, StandardOpenOption.CREATE,
+		StandardOpenOption.READ, StandardOpenOption.WRITE), forcando, liberar);
+
+	try (PilotJournal journal = PilotJournal.open(canal)) {
+	  /* o primeiro cadastro fica preso no force */
+	  Thread primeiro = appender(journal, 0L);
+	  forcando.await();
+
+	  /* os outros chegam enquanto o primeiro lote está sendo forçado */
+	  Thread[] outros = new Thread[7];
+	  for (int t = 0; t < outros.length; t++) {
+		outros[t] = appender(journal, t + 1L);
+	  }
+	  while (journal.recordsSinceCheckpoint() < 8) {
+		Thread.sleep(1);
+	  }
+	  liberar.countDown();
+
+	  primeiro.join();
+	  for (Thread outro : outros) {
+		outro.join();
+	  }
+	  /* um force para o primeiro e um único force para os sete que esperaram */
+	  assertEquals(2L, journal.forces());
+	  assertEquals(8, journal.replay(piloto -> {}));
+	}
+  }
+
+  private static Thread appender(PilotJournal journal, long cpf) {
+	Thread thread = new Thread(() -> {
+	  try {
+		journal.append(new Piloto(cpf, "P" + cpf, "PC"));
+	  } catch (IOException e) {
+		throw new IllegalStateException(e);
+	  }
+	});
+	thread.start();
+	return thread;
+  }
+
+  @Test
+  void pilotRegistry_journalOutsideLock() throws Exception {
+
+	Path arquivo = Files.createTempDirectory("pilotos").resolve("pilotos.journal");
+	CountDownLatch forcando = new CountDownLatch(1);
+	CountDownLatch liberar = new CountDownLatch(1);
+	FileChannel canal = new SlowForceChannel(FileChannel.open(arquivo, StandardOpenOption.CREATE,
+		StandardOpenOption.READ, StandardOpenOption.WRITE), forcando, liberar);
+	PilotRegistry registro = new PilotRegistry(4, null, PilotJournal.open(canal));
+	ExecutorService cadastros = Executors.newFixedThreadPool(2);
+
+	try {
+	  /* o primeiro cadastro fica preso no force, sem segurar a trava */
+	  Future<?> primeiro = cadastros.submit(() -> registro.register(new Piloto(1L, "Ana", "PC")));
+	  forcando.await();
+
+	  Future<Integer> consulta = cadastros.submit(() -> registro.withLicense("PC", 10).size());
+	  assertEquals(Integer.valueOf(0), consulta.get(5, TimeUnit.SECONDS));
+	  assertThrows(IllegalArgumentException.class, () -> registro.register(new Piloto(1L, "Repetida", "PC")));
+
+	  /* o segundo vai para o log enquanto o primeiro ainda espera o disco */
+	  Future<?> segundo = cadastros.submit(() -> registro.register(new Piloto(2L, "Bia", "PP")));
+	  while (registro.getJournal().recordsSinceCheckpoint() < 2) {
+		Thread.sleep(1);
+	  }
+	  liberar.countDown();
+
+	  primeiro.get(5, TimeUnit.SECONDS);
+	  segundo.get(5, TimeUnit.SECONDS);
+	  assertEquals(2, registro.size());
+	  assertEquals(2L, registro.getJournal().forces());
+	} finally {
+	  liberar.countDown();
+	  cadastros.shutdown();
+	  registro.close();
+	}
+  }
+
+  @Test
+  void pilotRegistry_writeAheadRollback() throws IOException {
+
+	Path base = Files.createTempDirectory("pilotos").resolve("pilotos");
+	Path arquivo = base.resolveSibling("pilotos.journal");
+	FileChannel canal = new SlowForceChannel(FileChannel.open(arquivo, StandardOpenOption.CREATE,
+		StandardOpenOption.READ, StandardOpenOption.WRITE), null, null);
+	MappedPilotStore store = MappedPilotStore.open(base, 4);
+	PilotRegistry registro = new PilotRegistry(4, store, PilotJournal.open(canal));
+
+	try {
+	  /* inválido: rejeitado antes de ir para o log */
+	  assertThrows(IllegalArgumentException.class,
+		  () -> registro.register(new Piloto(1L, "Licença longa", "LICENCA-GRANDE-DEMAIS")));
+	  assertEquals(0L, registro.getJournal().recordsSinceCheckpoint());
+
+	  /* o force falha: o cadastro não chega na lista nem no armazenamento */
+	  assertThrows(UncheckedIOException.class, () -> registro.register(new Piloto(2L, "Sem disco", "PC")));
+	  assertEquals(0, registro.size());
+	  assertEquals(-1, store.indexOf(2L));
+	  assertNull(registro.findByCpf(2L));
+	  assertEquals(0L, Files.size(arquivo));
+
+	  /* importação com o force falhando: nenhum dos pilotos fica */
+	  Piloto[] importados = { new Piloto(3L, "Um", "PC"), new Piloto(4L, "Dois", "PP"), new Piloto(5L, "Três", "PLA") };
+	  assertThrows(UncheckedIOException.class, () -> registro.registerAll(importados, importados.length));
+	  assertEquals(0, registro.size());
+	  assertEquals(0, store.size());
+	  assertNull(registro.findByCpf(4L));
+	  assertEquals(0L, Files.size(arquivo));
+	} finally {
+	  registro.close();
+	}
+  }
+
+  /**
+   * Canal que segura o primeiro force até o teste liberar, ou que falha
+   * em todo force quando não recebe as travas.
+   */
+  private static final class SlowForceChannel extends FileChannel {
+
+	private final FileChannel canal;
+	private final CountDownLatch forcando;
+	private final CountDownLatch liberar;
+
+	SlowForceChannel(FileChannel canal, CountDownLatch forcando, CountDownLatch liberar) {
+	  this.canal = canal;
+	  this.forcando = forcando;
+	  this.liberar = liberar;
+	}
+
+	@Override
+	public void force(boolean metaData) throws IOException {
+	  if (forcando == null)
+		throw new IOException("Disco indisponível.");
+
+	  forcando.countDown();
+	  try {
+		liberar.await();
+	  } catch (InterruptedException e) {
+		throw new InterruptedIOException();
+	  }
+	  canal.force(metaData);
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+	  return canal.read(dst);
+	}
+
+	@Override
+	public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+	  return canal.read(dsts, offset, length);
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+	  return canal.write(src);
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+	  return canal.write(srcs, offset, length);
+	}
+
+	@Override
+	public long position() throws IOException {
+	  return canal.position();
+	}
+
+	@Override
+	public FileChannel position(long newPosition) throws IOException {
+	  canal.position(newPosition);
+	  return this;
+	}
+
+	@Override
+	public long size() throws IOException {
+	  return canal.size();
+	}
+
+	@Override
+	public FileChannel truncate(long size) throws IOException {
+	  canal.truncate(size);
+	  return this;
+	}
+
+	@Override
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+	  return canal.transferTo(position, count, target);
+	}
+
+	@Override
+	public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+	  return canal.transferFrom(src, position, count);
+	}
+
+	@Override
+	public int read(ByteBuffer dst, long position) throws IOException {
+	  return canal.read(dst, position);
+	}
+
+	@Override
+	public int write(ByteBuffer src, long position) throws IOException {
+	  return canal.write(src, position);
+	}
+
+	@Override
+	public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+	  return canal.map(mode, position, size);
+	}
+
+	@Override
+	public FileLock lock(long position, long size, boolean shared) throws IOException {
+	  return canal.lock(position, size, shared);
+	}
+
+	@Override
+	public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+	  return canal.tryLock(position, size, shared);
+	}
+
+	@Override
+	protected void implCloseChannel() throws IOException {
+	  canal.close();
+	}
+  }
+
+  @Test
+  void pilotImporter_parallelCsv() throws Exception {
+
+	Path arquivo = Files.createTempDirectory("pilotos").resolve("pilotos.csv");
+	StringBuilder csv = new StringBuilder("cpf,nome,licença\n");
+	for (long base = 1; base <= 60_000; base++) {
+	  csv.append(Cpf.withCheckDigits(base)).append(base % 2 == 0 ? ',' : '\t')
+		  .append("Piloto ").append(base).append(" , PC\r\n");
+	}
+	csv.append("123,CPF inválido,PC\n").append("\n").append(Cpf.withCheckDigits(7)).append(",Repetido,PP");
+	Files.write(arquivo, csv.toString().getBytes("UTF-8"));
+
+	PilotImporter.Result resultado = PilotImporter.read(arquivo);
+
+	assertEquals(60_001, resultado.count());
+	assertEquals(2, resultado.rejected());
+	assertEquals("Piloto 1", resultado.pilots()[0].getName());
+	assertEquals("PC", resultado.pilots()[59_999].getLicense());
+	assertEquals("Repetido", resultado.pilots()[60_000].getName());
+
+	DataRegister<Piloto> registrador = new DataRegister<>();
+	registrador.addIndex(new LongHashIndex<>(Piloto::getCpfKey));
+
+	assertEquals(60_000, registrador.dynamicallyAddAll(resultado.pilots(), 0, resultado.count()));
+	assertEquals(60_001, registrador.capacity());
+	assertEquals(Cpf.withCheckDigits(60_000), registrador.get(59_999).getCpfKey());
+  }
+
+}
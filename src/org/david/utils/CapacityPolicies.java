@@ -0,0 +1,151 @@
+package org.david.utils;
+
+/**
+ * Fábricas das {@link CapacityPolicy} mais comuns.
+ * 
+ * <blockquote><pre>
+ * {@code
+ * 
+ * new DataRegister<>(20, CapacityPolicies.shrinking(CapacityPolicies.multiplicative(2), 0.25, 0.5, 20));
+ * 
+ * }
+ * </pre></blockquote>
+ * 
+ * @author David Duarte Pinheiro
+ */
+public final class CapacityPolicies {
+
+  /* 
+   * maior capacidade possível de um vetor.
+   */
+  public static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+  /**
+   * Política padrão do {@link DataRegister}: multiplica pelo
+   * {@link DataRegister#GROWTH_FACTOR}, crescendo no mínimo
+   * {@link DataRegister#DYNAMICALLY_EXPANSION}, e nunca diminui.
+   */
+  public static final CapacityPolicy DEFAULT = multiplicative(DataRegister.GROWTH_FACTOR);
+
+  /**
+   * Cresce sempre a mesma quantidade. Adicionar N elementos custa O(N²/step).
+   * 
+   * @throws IllegalArgumentException caso o passo não seja positivo.
+   */
+  public static CapacityPolicy fixed(int step) {
+
+	if (step < 1)
+	  throw new IllegalArgumentException("O passo deve ser positivo.");
+
+	return (capacity, required) -> {
+	  long passos = Math.max(1, ((long) required - capacity + step - 1) / step);
+	  return clamp(capacity + passos * step, required);
+	};
+  }
+
+  /**
+   * Multiplica a capacidade pelo fator, crescendo no mínimo
+   * {@link DataRegister#DYNAMICALLY_EXPANSION}. Adicionar N elementos custa O(1) amortizado.
+   * 
+   * @throws IllegalArgumentException caso o fator não seja maior que 1.
+   */
+  public static CapacityPolicy multiplicative(double factor) {
+
+	if (!(factor > 1))
+	  throw new IllegalArgumentException("O fator deve ser maior que 1.");
+
+	return (capacity, required) -> {
+	  long nova = Math.max((long) (capacity * factor), (long) capacity + DataRegister.DYNAMICALLY_EXPANSION);
+	  return clamp(Math.max(nova, required), required);
+	};
+  }
+
+  /**
+   * Cresce para o próximo número de Fibonacci, um fator que tende a 1,618,
+   * desperdiçando menos espaço que dobrar.
+   */
+  public static CapacityPolicy fibonacci() {
+	return (capacity, required) -> {
+	  long anterior = 1;
+	  long atual = 2;
+	  while (atual <= capacity || atual < required) {
+		long proximo = anterior + atual;
+		anterior = atual;
+		atual = proximo;
+	  }
+	  return clamp(atual, required);
+	};
+  }
+
+  /**
+   * Limita a capacidade da política passada.
+   * 
+   * @throws IllegalArgumentException caso o máximo não seja positivo.
+   */
+  public static CapacityPolicy bounded(CapacityPolicy policy, int maxCapacity) {
+
+	if (policy == null)
+	  throw new NullPointerException("Política nula.");
+
+	if (maxCapacity < 1)
+	  throw new IllegalArgumentException("A capacidade máxima deve ser positiva.");
+
+	return new CapacityPolicy() {
+
+	  @Override
+	  public int grow(int capacity, int required) {
+		if (required > maxCapacity)
+		  throw new IndexOutOfBoundsException("Registrador atingiu a capacidade máxima de " + maxCapacity + ".");
+		return Math.min(policy.grow(capacity, required), maxCapacity);
+	  }
+
+	  @Override
+	  public int shrink(int capacity, int size) {
+		return policy.shrink(capacity, size);
+	  }
+	};
+  }
+
+  /**
+   * Adiciona a diminuição automática com histerese: quando a ocupação fica
+   * abaixo de 'shrinkBelow', a capacidade volta para uma ocupação de
+   * 'targetFill'. Como 'targetFill' é maior que 'shrinkBelow', a lista
+   * precisa crescer ou diminuir bastante antes de realocar de novo.
+   * 
+   * @param policy política de crescimento.
+   * @param shrinkBelow ocupação que dispara a diminuição, ex.: 0,25.
+   * @param targetFill ocupação depois de diminuir, ex.: 0,5.
+   * @param minCapacity a lista nunca diminui abaixo dessa capacidade.
+   * @throws IllegalArgumentException caso não valha 0 < shrinkBelow < targetFill <= 1.
+   */
+  public static CapacityPolicy shrinking(CapacityPolicy policy, double shrinkBelow, double targetFill,
+	  int minCapacity) {
+
+	if (policy == null)
+	  throw new NullPointerException("Política nula.");
+
+	if (!(shrinkBelow > 0 && shrinkBelow < targetFill && targetFill <= 1))
+	  throw new IllegalArgumentException("Deve valer 0 < shrinkBelow < targetFill <= 1.");
+
+	return new CapacityPolicy() {
+
+	  @Override
+	  public int grow(int capacity, int required) {
+		return policy.grow(capacity, required);
+	  }
+
+	  @Override
+	  public int shrink(int capacity, int size) {
+		if (capacity <= minCapacity || size >= capacity * shrinkBelow)
+		  return capacity;
+		return (int) Math.min(capacity, Math.max(minCapacity, (long) Math.ceil(size / targetFill)));
+	  }
+	};
+  }
+
+  private static int clamp(long capacity, int required) {
+	if (required > MAX_CAPACITY)
+	  throw new IndexOutOfBoundsException("Registrador atingiu a capacidade máxima.");
+	return (int) Math.min(capacity, MAX_CAPACITY);
+  }
+}
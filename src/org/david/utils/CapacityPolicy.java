@@ -0,0 +1,31 @@
+package org.david.utils;
+
+/**
+ * Define como a capacidade de um {@link DataRegister} cresce quando falta
+ * espaço e, opcionalmente, como ela diminui depois de remoções.
+ * 
+ * @author David Duarte Pinheiro
+ * @see CapacityPolicies
+ */
+public interface CapacityPolicy {
+
+  /**
+   * @param capacity capacidade atual.
+   * @param required capacidade mínima necessária.
+   * @return a nova capacidade, maior ou igual a 'required'.
+   * @throws IndexOutOfBoundsException caso a lista não possa crescer até 'required'.
+   */
+  int grow(int capacity, int required);
+
+  /**
+   * Chamado depois das remoções. Por padrão a lista nunca diminui sozinha.
+   * 
+   * @param capacity capacidade atual.
+   * @param size quantidade de elementos.
+   * @return a capacidade desejada, igual à atual para não diminuir.
+   */
+  default int shrink(int capacity, int size) {
+	return capacity;
+  }
+
+}
@@ -0,0 +1,156 @@
+package org.david.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Índice que agrupa os elementos por um código int pequeno e denso
+ * (ex.: o código da licença do {@link org.david.models.LicenseDictionary}).
+ * 
+ * Cada código tem a sua lista de elementos, então contar ou percorrer um
+ * grupo não compara textos nem percorre a lista inteira. Elementos com
+ * código negativo não são indexados.
+ * 
+ * Com um {@link IndexSlot}, cada elemento guarda a posição dele no grupo,
+ * então remover não percorre o grupo e um removeIf que apaga N elementos
+ * custa O(N), não O(N²). Sem ele, a remoção procura o elemento só entre os
+ * do mesmo código.
+ * 
+ * @author David Duarte Pinheiro
+ */
+@SuppressWarnings("unchecked")
+public final class CodeIndex<E> implements RegisterIndex<E> {
+
+  private final ToIntFunction<? super E> codeExtractor;
+
+  private Object[][] groups = new Object[8][];
+  private int[] counts = new int[8];
+
+  private final IndexSlot<? super E> slots;
+
+  /**
+   * @param slots onde cada elemento guarda a posição dele no grupo, ou null
+   * para procurar o elemento no grupo ao remover.
+   */
+  public CodeIndex(ToIntFunction<? super E> codeExtractor, IndexSlot<? super E> slots) {
+
+	if (codeExtractor == null)
+	  throw new NullPointerException("Extrator de código nulo.");
+
+	this.codeExtractor = codeExtractor;
+	this.slots = slots;
+  }
+
+  public CodeIndex(ToIntFunction<? super E> codeExtractor) {
+	this(codeExtractor, null);
+  }
+
+  /**
+   * @return quantos elementos têm o código.
+   */
+  public int count(int code) {
+	return code >= 0 && code < counts.length ? counts[code] : 0;
+  }
+
+  /**
+   * @return o maior código já indexado mais um.
+   */
+  public int codes() {
+	int ultimo = counts.length;
+	while (ultimo > 0 && groups[ultimo - 1] == null) {
+	  ultimo--;
+	}
+	return ultimo;
+  }
+
+  /**
+   * Percorre os elementos do código, na ordem em que foram adicionados
+   * (menos depois de remoções, que trazem o último para o lugar do removido).
+   * 
+   * @param limit quantidade máxima de elementos visitados.
+   * @return quantos elementos foram visitados.
+   */
+  public int forEach(int code, int limit, Consumer<? super E> consumer) {
+
+	if (consumer == null)
+	  throw new NullPointerException("Null consumer.");
+
+	int total = Math.min(count(code), limit);
+	for (int i = 0; i < total; i++) {
+	  consumer.accept((E) groups[code][i]);
+	}
+	return total;
+  }
+
+  /**
+   * @return os elementos do código, no máximo 'limit'.
+   */
+  public List<E> get(int code, int limit) {
+	List<E> resultados = new ArrayList<>(Math.min(count(code), limit));
+	forEach(code, limit, resultados::add);
+	return resultados;
+  }
+
+  @Override
+  public void indexed(E element) {
+	int code = codeExtractor.applyAsInt(element);
+	if (code < 0)
+	  return;
+
+	if (code >= counts.length) {
+	  int capacidade = Math.max(counts.length << 1, code + 1);
+	  groups = Arrays.copyOf(groups, capacidade);
+	  counts = Arrays.copyOf(counts, capacidade);
+	}
+
+	Object[] grupo = groups[code];
+	if (grupo == null) {
+	  grupo = groups[code] = new Object[4];
+	} else if (counts[code] == grupo.length) {
+	  grupo = groups[code] = Arrays.copyOf(grupo, grupo.length << 1);
+	}
+	if (slots != null)
+	  slots.set(element, counts[code]);
+	grupo[counts[code]++] = element;
+  }
+
+  @Override
+  public void unindexed(E element) {
+	int code = codeExtractor.applyAsInt(element);
+	if (code < 0 || code >= counts.length)
+	  return;
+
+	Object[] grupo = groups[code];
+	int posicao = slots == null ? -1 : slots.get(element);
+	if (posicao < 0 || posicao >= counts[code] || grupo[posicao] != element)
+	  posicao = indexOf(grupo, counts[code], element);
+	if (posicao < 0)
+	  return;
+
+	/* o último do grupo vai para o lugar do removido */
+	int ultimo = --counts[code];
+	if (posicao != ultimo) {
+	  grupo[posicao] = grupo[ultimo];
+	  if (slots != null)
+		slots.set((E) grupo[posicao], posicao);
+	}
+	grupo[ultimo] = null;
+  }
+
+  @Override
+  public void cleared() {
+	groups = new Object[8][];
+	counts = new int[8];
+  }
+
+  private static int indexOf(Object[] grupo, int count, Object element) {
+	for (int i = 0; i < count; i++) {
+	  if (grupo[i] == element || grupo[i].equals(element))
+		return i;
+	}
+	return -1;
+  }
+}
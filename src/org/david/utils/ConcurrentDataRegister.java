@@ -0,0 +1,490 @@
+package org.david.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.david.exceptions.RegisterValidationException;
+import org.david.options.Iterateable;
+
+/**
+ * Versão do {@link DataRegister} que pode ser usada por várias threads ao
+ * mesmo tempo.
+ * 
+ * Os elementos ficam em segmentos, e cada segmento em blocos que dobram de
+ * tamanho (8, 16, 32...). Só o último segmento, o log, recebe adições: cada
+ * adição reserva a sua posição com um CAS no cursor dele e escreve direto no
+ * bloco, então várias threads adicionam em paralelo. Quando um bloco ainda não
+ * existe, a primeira thread que precisar dele cria e publica com CAS; as outras
+ * usam o bloco publicado. Como os blocos antigos nunca são copiados, crescer
+ * não trava ninguém.
+ * 
+ * Diferente do {@link DataRegister}, uma remoção não desloca os elementos: a
+ * posição removida fica nula até a próxima compactação, então o
+ * {@link ConcurrentDataRegister#get(int)} pode devolver null. A compactação
+ * acontece quando o add() encontra a lista cheia com posições removidas, ou
+ * pelo {@link ConcurrentDataRegister#compact()}.
+ * 
+ * Adições e leituras não seguram trava nenhuma. A compactação não mexe nos
+ * segmentos que estão sendo lidos: ela publica um log novo, fecha o antigo
+ * para adições, copia os elementos dos segmentos fechados para um segmento novo
+ * e só então publica a geração compactada. As adições seguem no log novo durante
+ * a cópia, e as leituras usam a geração que encontraram. Só as remoções, que
+ * mudam os segmentos fechados, esperam a compactação e o clear() terminarem.
+ * 
+ * @author David Duarte Pinheiro
+ */
+public final class ConcurrentDataRegister<E> {
+
+  /* 
+   * tamanho do primeiro bloco (sempre potência de 2).
+   */
+  public static final int FIRST_BLOCK_SIZE = 8;
+
+  private static final int FIRST_BLOCK_BITS = Integer.numberOfTrailingZeros(FIRST_BLOCK_SIZE);
+
+  /* 
+   * quantidade máxima de blocos, suficiente para Integer.MAX_VALUE posições.
+   */
+  private static final int MAX_BLOCKS = 32 - FIRST_BLOCK_BITS;
+
+  private static final int MAX_CAPACITY = Integer.MAX_VALUE - FIRST_BLOCK_SIZE;
+
+  /* 
+   * bit do cursor de um segmento fechado para adições.
+   */
+  private static final int SEALED = Integer.MIN_VALUE;
+
+  /* 
+   * segmentos atuais, trocados só com a trava de escrita da 'phase'.
+   */
+  private volatile Generation<E> generation = new Generation<>(new Segment<>());
+
+  /* 
+   * limite de posições usado pelo add(), igual a capacidade do DataRegister.
+   */
+  private final AtomicInteger capacity;
+
+  /* 
+   * exclusiva durante a compactação e o clear(), compartilhada pelas remoções.
+   */
+  private final ReentrantReadWriteLock phase = new ReentrantReadWriteLock();
+
+  public ConcurrentDataRegister(int initialCapacity) {
+
+	if (initialCapacity < 0)
+	  throw new IllegalArgumentException("Capacidade inicial negativa.");
+
+	this.capacity = new AtomicInteger(initialCapacity);
+  }
+
+  public ConcurrentDataRegister() {
+	this(DataRegister.INITIAL_CAPACITY);
+  }
+
+  /**
+   * Adiciona um elemento na lista se possível.
+   * 
+   * @param element objeto para ser adicionado.
+   * @throws NullPointerException se 'element' for igual a null
+   * @throws IndexOutOfBoundsException caso a lista esteja cheia
+   **/
+  public void add(E element) {
+
+	if (element == null)
+	  throw new NullPointerException("Nâo é possível adicionar um valor nulo.");
+
+	boolean compactou = false;
+	while (true) {
+	  Generation<E> atual = generation;
+	  Segment<E> log = atual.log();
+	  int posicao = log.cursor.get();
+
+	  /* log fechado: a geração nova já foi publicada */
+	  if ((posicao & SEALED) != 0)
+		continue;
+
+	  int posicoes = atual.closedPositions() + posicao;
+	  if (posicoes < capacity.get()) {
+		if (log.cursor.compareAndSet(posicao, posicao + 1)) {
+		  log.store(posicao, element);
+		  return;
+		}
+		continue;
+	  }
+
+	  /* cheia: só vale compactar se existem posições removidas */
+	  if (compactou || atual.size() >= posicoes)
+		throw new IndexOutOfBoundsException("Registrador não possui espaço.");
+
+	  compact();
+	  compactou = true;
+	}
+  }
+
+  /**
+   * Adiciona um elemento dinamicamente, aumentando a lista se precisar.
+   * 
+   * @param element objeto para ser adicionado.
+   * @throws RegisterValidationException nunca é lançada, existe para manter
+   * a mesma assinatura do {@link DataRegister#dynamicallyAdd(Object)}.
+   * @throws NullPointerException se 'element' for igual a null
+   **/
+  public void dynamicallyAdd(E element) throws RegisterValidationException {
+
+	if (element == null)
+	  throw new NullPointerException("Nâo é possível adicionar um valor nulo.");
+
+	while (true) {
+	  Generation<E> atual = generation;
+	  Segment<E> log = atual.log();
+	  int posicao = log.cursor.get();
+
+	  if ((posicao & SEALED) != 0)
+		continue;
+
+	  int posicoes = atual.closedPositions() + posicao;
+	  if (posicoes >= MAX_CAPACITY)
+		throw new IndexOutOfBoundsException("Registrador atingiu a capacidade máxima.");
+
+	  if (!log.cursor.compareAndSet(posicao, posicao + 1))
+		continue;
+
+	  int limite;
+	  while ((limite = capacity.get()) <= posicoes && !capacity.compareAndSet(limite, posicoes + 1));
+
+	  log.store(posicao, element);
+	  return;
+	}
+  }
+
+  /**
+   * Remove o elemento passado caso ele exista. A posição dele fica nula.
+   * Espera uma compactação ou um clear() em andamento terminar.
+   * 
+   * @param element objeto para ser removido.
+   * @throws NullPointerException se 'element' for igual a null
+   * @throws RegisterValidationException nunca é lançada, existe para manter
+   * a mesma assinatura do {@link DataRegister#remove(Object)}.
+   **/
+  public void remove(E element) throws RegisterValidationException {
+
+	if (element == null)
+	  throw new NullPointerException("Não é possível remover uma valor nulo.");
+
+	phase.readLock().lock();
+	try {
+	  for (Segment<E> segmento : generation.segments) {
+		if (segmento.remove(element))
+		  return;
+	  }
+	} finally {
+	  phase.readLock().unlock();
+	}
+  }
+
+  /**
+   * Checa se o objeto passado contém na lista.
+   * 
+   * @return falso caso o objeto passado seja nulo ou se o element não existe.
+   **/
+  public boolean contains(E element) {
+
+	if (element == null)
+	  return false;
+
+	for (Segment<E> segmento : generation.segments) {
+	  int limite = segmento.length();
+	  for (int i = 0; i < limite; i++) {
+		if (element.equals(segmento.slot(i)))
+		  return true;
+	  }
+	}
+	return false;
+  }
+
+  /**
+   * Pega um elemento pela posição em que ele foi adicionado. Diferente do
+   * {@link DataRegister#get(int)}, as posições não são densas: uma posição
+   * removida fica nula até a próxima compactação, que pode mudar as posições.
+   * 
+   * @return o elemento, ou null caso ele tenha sido removido ou ainda
+   * esteja sendo escrito por outra thread.
+   * @throws IndexOutOfBoundsException caso o index esteja fora da lista.
+   **/
+  public E get(int index) {
+
+	if (index >= 0) {
+	  int posicao = index;
+	  for (Segment<E> segmento : generation.segments) {
+		int tamanho = segmento.length();
+		if (posicao < tamanho)
+		  return segmento.slot(posicao);
+		posicao -= tamanho;
+	  }
+	}
+	throw new IndexOutOfBoundsException(index + " fora dos limites.");
+  }
+
+  /**
+   * Exerce uma ação para todos os elementos da lista, sem travar as outras
+   * threads. Elementos adicionados durante a iteração podem não aparecer.
+   * 
+   * @throws NullPointerException caso o consumer seja nulo.
+   **/
+  public void forEach(Iterateable<E> consumer) {
+
+	if (consumer == null)
+	  throw new NullPointerException("Null consumer.");
+
+	for (Segment<E> segmento : generation.segments) {
+	  int limite = segmento.length();
+	  for (int i = 0; i < limite; i++) {
+		E element = segmento.slot(i);
+		if (element != null)
+		  consumer.execute(element);
+	  }
+	}
+  }
+
+  /**
+   * Aumenta o limite usado pelo {@link ConcurrentDataRegister#add(Object)}.
+   * 
+   * @throws IllegalArgumentException Caso expandir < 0
+   **/
+  public void expand(int expandir) {
+
+	if (expandir < 0)
+	  throw new IllegalArgumentException("Você não pode expandir com valores negativos.");
+
+	int atual;
+	do {
+	  atual = capacity.get();
+	} while (!capacity.compareAndSet(atual, (int) Math.min((long) atual + expandir, MAX_CAPACITY)));
+  }
+
+  /**
+   * Limpa a lista trocando todos os segmentos por um log vazio. Uma adição
+   * que ainda escrevia no log antigo é descartada junto com ele.
+   **/
+  public void clear() {
+	phase.writeLock().lock();
+	try {
+	  Generation<E> antiga = generation;
+	  generation = new Generation<>(new Segment<>());
+	  antiga.log().seal();
+	} finally {
+	  phase.writeLock().unlock();
+	}
+  }
+
+  /**
+   * Junta os elementos no começo, na ordem em que foram adicionados,
+   * liberando as posições removidas. As adições feitas durante a compactação
+   * ficam depois dos elementos compactados.
+   * 
+   * Espera as remoções em andamento e as adições que já reservaram uma
+   * posição no log antigo; as adições e leituras nunca esperam por ela.
+   **/
+  public void compact() {
+	phase.writeLock().lock();
+	try {
+	  Generation<E> antiga = generation;
+	  Segment<E> log = new Segment<>();
+
+	  /* o log novo é publicado antes do antigo ser fechado, ninguém fica sem onde adicionar */
+	  generation = antiga.append(log);
+	  Segment<E> fechado = antiga.log();
+	  fechado.awaitWrites(fechado.seal());
+
+	  Segment<E> compactado = new Segment<>();
+	  for (Segment<E> segmento : antiga.segments) {
+		int limite = segmento.length();
+		for (int i = 0; i < limite; i++) {
+		  E element = segmento.slot(i);
+		  if (element != null)
+			compactado.store(compactado.cursor.getAndIncrement(), element);
+		}
+	  }
+	  compactado.seal();
+
+	  generation = compactado.length() == 0 ? new Generation<>(log) : new Generation<>(compactado, log);
+	} finally {
+	  phase.writeLock().unlock();
+	}
+  }
+
+  /**
+   * Retorna se a lista está vazia.
+   **/
+  public boolean isEmpty() {
+	return size() == 0;
+  }
+
+  /**
+   * @return Capacidade total da lista.
+   **/
+  public int capacity() {
+	return capacity.get();
+  }
+
+  /**
+   * @return Quantos elementos a lista tem.
+   **/
+  public int size() {
+	return generation.size();
+  }
+
+  /**
+   * O bloco 'b' começa na posição (FIRST_BLOCK_SIZE << b) - FIRST_BLOCK_SIZE,
+   * então o bloco é o bit mais alto de (index + FIRST_BLOCK_SIZE).
+   */
+  private static int blockOf(int index) {
+	int posicao = index + FIRST_BLOCK_SIZE;
+	return 31 - Integer.numberOfLeadingZeros(posicao) - FIRST_BLOCK_BITS;
+  }
+
+  private static int offsetOf(int index) {
+	int posicao = index + FIRST_BLOCK_SIZE;
+	return posicao ^ Integer.highestOneBit(posicao);
+  }
+
+  /**
+   * Segmentos da lista em ordem, o último é o log que recebe as adições.
+   * Nunca muda depois de publicada.
+   */
+  private static final class Generation<E> {
+
+	final Segment<E>[] segments;
+
+	@SafeVarargs
+	Generation(Segment<E>... segments) {
+	  this.segments = segments;
+	}
+
+	Segment<E> log() {
+	  return segments[segments.length - 1];
+	}
+
+	/**
+	 * @return a mesma geração com um log novo no fim.
+	 */
+	Generation<E> append(Segment<E> log) {
+	  Segment<E>[] novos = Arrays.copyOf(segments, segments.length + 1);
+	  novos[segments.length] = log;
+	  return new Generation<>(novos);
+	}
+
+	/**
+	 * @return quantas posições existem antes do log.
+	 */
+	int closedPositions() {
+	  int posicoes = 0;
+	  for (int i = 0; i < segments.length - 1; i++) {
+		posicoes += segments[i].length();
+	  }
+	  return posicoes;
+	}
+
+	int size() {
+	  int tamanho = 0;
+	  for (Segment<E> segmento : segments) {
+		tamanho += segmento.count.get();
+	  }
+	  return tamanho;
+	}
+  }
+
+  /**
+   * Posições reservadas por CAS no cursor, guardadas em blocos que dobram
+   * de tamanho.
+   */
+  private static final class Segment<E> {
+
+	final AtomicReferenceArray<AtomicReferenceArray<E>> blocks = new AtomicReferenceArray<>(MAX_BLOCKS);
+
+	/* 
+	 * próxima posição livre, com o bit SEALED depois de fechado.
+	 */
+	final AtomicInteger cursor = new AtomicInteger();
+
+	/* 
+	 * quantas posições reservadas já foram escritas.
+	 */
+	final AtomicInteger written = new AtomicInteger();
+
+	/* 
+	 * quantos elementos o segmento tem.
+	 */
+	final AtomicInteger count = new AtomicInteger();
+
+	int length() {
+	  return cursor.get() & ~SEALED;
+	}
+
+	/**
+	 * Fecha o segmento para adições.
+	 *
+	 * @return quantas posições foram reservadas até o fechamento.
+	 */
+	int seal() {
+	  int atual;
+	  while (((atual = cursor.get()) & SEALED) == 0 && !cursor.compareAndSet(atual, atual | SEALED));
+	  return atual & ~SEALED;
+	}
+
+	/**
+	 * Espera as adições que reservaram uma das primeiras 'positions'
+	 * posições terminarem de escrever.
+	 */
+	void awaitWrites(int positions) {
+	  while (written.get() < positions) {
+		Thread.yield();
+	  }
+	}
+
+	/**
+	 * Escreve o elemento na posição reservada, criando o bloco caso
+	 * nenhuma outra thread tenha criado ainda.
+	 */
+	void store(int index, E element) {
+	  blockFor(index).set(offsetOf(index), element);
+	  count.incrementAndGet();
+	  written.incrementAndGet();
+	}
+
+	boolean remove(E element) {
+	  int limite = length();
+	  for (int i = 0; i < limite; i++) {
+		AtomicReferenceArray<E> bloco = blocks.get(blockOf(i));
+		if (bloco == null)
+		  continue;
+
+		int posicao = offsetOf(i);
+		E atual = bloco.get(posicao);
+		if (element.equals(atual) && bloco.compareAndSet(posicao, atual, null)) {
+		  count.decrementAndGet();
+		  return true;
+		}
+	  }
+	  return false;
+	}
+
+	E slot(int index) {
+	  AtomicReferenceArray<E> bloco = blocks.get(blockOf(index));
+	  return bloco == null ? null : bloco.get(offsetOf(index));
+	}
+
+	private AtomicReferenceArray<E> blockFor(int index) {
+	  int numeroBloco = blockOf(index);
+	  AtomicReferenceArray<E> bloco = blocks.get(numeroBloco);
+
+	  if (bloco == null) {
+		AtomicReferenceArray<E> novoBloco = new AtomicReferenceArray<>(FIRST_BLOCK_SIZE << numeroBloco);
+		bloco = blocks.compareAndSet(numeroBloco, null, novoBloco) ? novoBloco : blocks.get(numeroBloco);
+	  }
+	  return bloco;
+	}
+  }
+}
@@ -0,0 +1,138 @@
+package org.david.utils;
+
+/**
+ * Métodos para tratar o CPF como um número primitivo.
+ * 
+ * Um CPF tem 11 dígitos decimais, então ele cabe em um long. Assim as buscas
+ * e comparações não precisam de String nem de boxing.
+ * 
+ * @author David Duarte Pinheiro
+ */
+public final class Cpf {
+
+  /* 
+   * retornado quando o texto não é um CPF.
+   */
+  public static final long INVALID = -1L;
+
+  /* 
+   * quantidade de dígitos de um CPF.
+   */
+  public static final int DIGITS = 11;
+
+  private static final long MAX = 99_999_999_999L;
+
+  /**
+   * Converte o texto para o CPF numérico, aceitando também o formato
+   * com pontos e traço (ex.: 529.982.247-25). Não valida os dígitos
+   * verificadores, para isso use o {@link Cpf#isValid(long)}.
+   * 
+   * @return o CPF como long ou {@link Cpf#INVALID}.
+   */
+  public static long parse(CharSequence text) {
+
+	if (text == null || text.length() == 0)
+	  return INVALID;
+
+	long value = 0;
+	int digits = 0;
+	for (int i = 0; i < text.length(); i++) {
+	  char c = text.charAt(i);
+	  if (c >= '0' && c <= '9') {
+		if (++digits > DIGITS)
+		  return INVALID;
+		value = value * 10 + (c - '0');
+	  } else if (c != '.' && c != '-') {
+		return INVALID;
+	  }
+	}
+
+	return digits == 0 ? INVALID : value;
+  }
+
+  /**
+   * Confere os dois dígitos verificadores do CPF.
+   * 
+   * @return falso caso o CPF seja inválido ou tenha todos os dígitos iguais.
+   */
+  public static boolean isValid(long cpf) {
+
+	if (cpf < 0 || cpf > MAX)
+	  return false;
+
+	int[] d = new int[DIGITS];
+	long rest = cpf;
+	boolean allEqual = true;
+	for (int i = DIGITS - 1; i >= 0; i--) {
+	  d[i] = (int) (rest % 10);
+	  rest /= 10;
+	  if (i < DIGITS - 1 && d[i] != d[i + 1])
+		allEqual = false;
+	}
+
+	if (allEqual)
+	  return false;
+
+	return d[9] == checkDigit(d, 9) && d[10] == checkDigit(d, 10);
+  }
+
+  /**
+   * Completa os 9 primeiros dígitos com os dígitos verificadores.
+   * 
+   * @param base os 9 primeiros dígitos do CPF.
+   * @return o CPF completo.
+   * @throws IllegalArgumentException caso a base tenha mais de 9 dígitos.
+   */
+  public static long withCheckDigits(long base) {
+
+	if (base < 0 || base > 999_999_999L)
+	  throw new IllegalArgumentException("A base do CPF deve ter até 9 dígitos.");
+
+	int[] d = new int[DIGITS];
+	long rest = base;
+	for (int i = 8; i >= 0; i--) {
+	  d[i] = (int) (rest % 10);
+	  rest /= 10;
+	}
+	d[9] = checkDigit(d, 9);
+	d[10] = checkDigit(d, 10);
+	return base * 100 + d[9] * 10 + d[10];
+  }
+
+  /**
+   * Formata o CPF com os 11 dígitos, completando com zeros à esquerda.
+   */
+  public static String format(long cpf) {
+	char[] chars = new char[DIGITS];
+	long rest = cpf;
+	for (int i = DIGITS - 1; i >= 0; i--) {
+	  chars[i] = (char) ('0' + rest % 10);
+	  rest /= 10;
+	}
+	return new String(chars);
+  }
+
+  /**
+   * @return se o texto está exatamente no formato de {@link Cpf#format(long)}.
+   */
+  public static boolean isCanonical(String text) {
+	if (text == null || text.length() != DIGITS)
+	  return false;
+
+	for (int i = 0; i < DIGITS; i++) {
+	  char c = text.charAt(i);
+	  if (c < '0' || c > '9')
+		return false;
+	}
+	return true;
+  }
+
+  private static int checkDigit(int[] d, int length) {
+	int sum = 0;
+	for (int i = 0; i < length; i++) {
+	  sum += d[i] * (length + 1 - i);
+	}
+	int digit = (sum * 10) % 11;
+	return digit == 10 ? 0 : digit;
+  }
+}
@@ -1,6 +1,23 @@
 package org.david.utils;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 import org.david.exceptions.RegisterValidationException;
+import org.david.metrics.RegisterMetrics;
 import org.david.options.Iterateable;
 
 /**
@@ -8,7 +25,7 @@ import org.david.options.Iterateable;
  * @author David Duarte Pinheiro
  */
 @SuppressWarnings("unchecked")
-public final class DataRegister<E> {
+public final class DataRegister<E> implements Iterable<E> {
 
   /* 
    * quando a lista não acha nenhum espaço livre.
@@ -25,16 +42,80 @@ public final class DataRegister<E> {
   public static final int REMOVAL = 1;
 
   /* 
-   * quandos espaços adicionar quando a lista
+   * quantos espaços adicionar, no mínimo, quando a lista
    * precisar adicionar dinamicamente.
    */
   public static final int DYNAMICALLY_EXPANSION = 2;
 
+  /* 
+   * fator de crescimento quando a lista precisar adicionar
+   * dinamicamente, assim as realocações ficam em O(log N).
+   */
+  public static final int GROWTH_FACTOR = 2;
+
+  /* 
+   * tamanho do buffer usado pelo see().
+   */
+  private static final int SEE_BUFFER_SIZE = 8 * 1024;
+
+  /* 
+   * monitor da lista. Não é usado o próprio vetor, já que o
+   * expand() troca ele por um novo.
+   */
+  private final Object lock = new Object();
+
   private Object[] elements;
   private int count;
 
-  public DataRegister(int initialCapacity) {
+  /* 
+   * quando ativo, o forEach percorre uma versão imutável da lista
+   * sem segurar o monitor.
+   */
+  private boolean snapshotIteration;
+
+  /* 
+   * quantos forEach em modo snapshot estão lendo o vetor atual agora.
+   */
+  private int readers;
+
+  /* 
+   * se algum spliterator (iterator, stream) recebeu o vetor atual. Não dá para
+   * saber quando ele termina, então vale até o vetor ser trocado.
+   */
+  private boolean streamed;
+
+  /* 
+   * métricas da lista, null quando desativadas.
+   */
+  private RegisterMetrics metrics;
+
+  /* 
+   * índice interno do modo único, null quando desativado.
+   */
+  private HashIndex<Object, E> unique;
+  private Function<? super E, ?> uniqueKey;
+
+  /* 
+   * índices anexados que acompanham as mudanças da lista.
+   */
+  private Object[] indexes = new Object[0];
+
+  /* 
+   * como a capacidade cresce e diminui.
+   */
+  private CapacityPolicy capacityPolicy;
+
+  public DataRegister(int initialCapacity, CapacityPolicy capacityPolicy) {
+
+	if (capacityPolicy == null)
+	  throw new NullPointerException("Política de capacidade nula.");
+
 	this.elements = new Object[initialCapacity];
+	this.capacityPolicy = capacityPolicy;
+  }
+
+  public DataRegister(int initialCapacity) {
+	this(initialCapacity, CapacityPolicies.DEFAULT);
   }
 
   public DataRegister() {
@@ -47,6 +128,7 @@ public final class DataRegister<E> {
    * @param element objeto para ser adicionado.
    * @throws NullPointerException se 'element' for igual a null 
    * @throws IndexOutOfBoundsException caso a lista esteja cheia
+   * @throws IllegalArgumentException caso algum índice anexado rejeite o elemento.
    * 
    **/
   public void add(E element) {
@@ -54,14 +136,18 @@ public final class DataRegister<E> {
 	if (element == null)
 	  throw new NullPointerException("Nâo é possível adicionar um valor nulo.");
 
-	int proximoIndexVazio = findFirst();
+	synchronized (lock) {
+	  int proximoIndexVazio = findFirst();
 
-	if (proximoIndexVazio == SEM_ESPACO)
-	  throw new IndexOutOfBoundsException("Registrador não possui espaço.");
+	  if (proximoIndexVazio == SEM_ESPACO)
+		throw new IndexOutOfBoundsException("Registrador não possui espaço.");
 
-	synchronized (elements) {
+	  checkIndexes(element);
 	  elements[proximoIndexVazio] = element;
 	  count++;
+	  notifyIndexed(element);
+	  if (metrics != null)
+		metrics.added(1);
 	}
   }
 
@@ -71,6 +157,7 @@ public final class DataRegister<E> {
    * @param element objeto para ser adicionado.
    * @throws RegisterValidationException caso a lista não consiga ser revalidada. 
    * @throws NullPointerException se 'element' for igual a null 
+   * @throws IllegalArgumentException caso algum índice anexado rejeite o elemento.
    * 
    **/
   public void dynamicallyAdd(E element) throws RegisterValidationException {
@@ -78,22 +165,73 @@ public final class DataRegister<E> {
 	if (element == null)
 	  throw new NullPointerException("Nâo é possível adicionar um valor nulo.");
 
-	int proximoIndexVazio = findFirst();
+	synchronized (lock) {
+	  checkIndexes(element);
 
-	if (proximoIndexVazio == SEM_ESPACO) {
-	  expand(DYNAMICALLY_EXPANSION);
-	  proximoIndexVazio = findFirst();
-	}
+	  int proximoIndexVazio = findFirst();
+
+	  if (proximoIndexVazio == SEM_ESPACO) {
+		grow();
+		proximoIndexVazio = findFirst();
+	  }
 
-	synchronized (elements) {
 	  elements[proximoIndexVazio] = element;
 	  count++;
+	  notifyIndexed(element);
+	  if (metrics != null)
+		metrics.added(1);
 	}
+  }
+
+  /**
+   * Adiciona vários elementos de uma vez, aumentando a lista no máximo uma
+   * vez para caber todos. Os elementos nulos ou rejeitados por algum índice
+   * anexado são ignorados.
+   * 
+   * @param source vetor com os elementos.
+   * @param offset posição do primeiro elemento no vetor.
+   * @param length quantos elementos adicionar.
+   * @return quantos elementos foram realmente adicionados, eles ficam no fim
+   * da lista na mesma ordem do vetor.
+   * @throws RegisterValidationException caso a lista não consiga ser revalidada. 
+   * @throws IndexOutOfBoundsException caso o intervalo não exista no vetor.
+   **/
+  public int dynamicallyAddAll(E[] source, int offset, int length) throws RegisterValidationException {
+
+	if (source == null)
+	  throw new NullPointerException("Vetor nulo.");
+
+	if (offset < 0 || length < 0 || offset + length > source.length)
+	  throw new IndexOutOfBoundsException("Intervalo [" + offset + ", " + (offset + length) + ") fora dos limites.");
+
+	synchronized (lock) {
+	  long necessario = (long) count + length;
 
+	  if (necessario > Integer.MAX_VALUE - 8)
+		throw new IndexOutOfBoundsException("Registrador atingiu a capacidade máxima.");
+
+	  if (necessario > elements.length)
+		expand(capacityPolicy.grow(elements.length, (int) necessario) - elements.length);
+
+	  int adicionados = 0;
+	  for (int i = offset; i < offset + length; i++) {
+		E element = source[i];
+		if (element == null || !acceptedByIndexes(element))
+		  continue;
+
+		elements[count++] = element;
+		notifyIndexed(element);
+		adicionados++;
+	  }
+	  if (metrics != null)
+		metrics.added(adicionados);
+	  return adicionados;
+	}
   }
 
   /**
-   * Remove o elemento passado caso ele exista.
+   * Remove o elemento passado caso ele exista. Os elementos seguintes são
+   * deslocados em bloco uma posição para trás, mantendo a lista compactada.
    * 
    * @param element objeto para ser adicionado.
    * @throws NullPointerException se 'element' for igual a null 
@@ -105,22 +243,111 @@ public final class DataRegister<E> {
 	if (element == null)
 	  throw new NullPointerException("Não é possível remover uma valor nulo.");
 
-	synchronized (elements) {
-	  for (int i = 0; i < elements.length; i++) {
+	synchronized (lock) {
+	  int percorridos = count;
+	  int removidos = 0;
+	  for (int i = 0; i < count; i++) {
 		if (element.equals(elements[i])) {
-		  elements[i] = null;
-		  count--;
+		  E removido = (E) elements[i];
+		  percorridos = i + 1;
+		  removidos = 1;
+		  unshare();
+		  System.arraycopy(elements, i + 1, elements, i, count - i - 1);
+		  elements[--count] = null;
+		  notifyUnindexed(removido);
+		  shrinkIfNeeded();
 		  break;
 		}
 	  }
+	  if (metrics != null)
+		metrics.removed(removidos, percorridos);
+	}
+  }
+
+  /**
+   * Remove todos os elementos que satisfazem o filtro passado, compactando
+   * a lista em uma única passada. Os trechos de elementos mantidos são
+   * movidos em bloco com {@link System#arraycopy(Object, int, Object, int, int)}.
+   * 
+   * @param filter retorna verdadeiro para os elementos que serão removidos.
+   * @return verdadeiro caso algum elemento tenha sido removido.
+   * @throws NullPointerException caso o filtro seja nulo.
+   **/
+  public boolean removeIf(Predicate<? super E> filter) {
+
+	if (filter == null)
+	  throw new NullPointerException("Filtro nulo.");
+
+	synchronized (lock) {
+	  unshare();
+	  int tamanhoAnterior = count;
+	  int escrita = 0;
+	  int leitura = 0;
+	  /* começo do trecho de elementos mantidos que ainda não foi movido */
+	  int inicio = 0;
+	  try {
+		while (leitura < tamanhoAnterior) {
+		  E elemento = (E) elements[leitura];
+		  if (!filter.test(elemento)) {
+			leitura++;
+			continue;
+		  }
+		  if (inicio != escrita) {
+			System.arraycopy(elements, inicio, elements, escrita, leitura - inicio);
+		  }
+		  escrita += leitura - inicio;
+		  inicio = ++leitura;
+		  notifyUnindexed(elemento);
+		}
+	  } finally {
+		/* o trecho pendente e, caso o filtro falhe, os elementos ainda não analisados são mantidos */
+		if (inicio < tamanhoAnterior) {
+		  System.arraycopy(elements, inicio, elements, escrita, tamanhoAnterior - inicio);
+		  escrita += tamanhoAnterior - inicio;
+		}
+		Arrays.fill(elements, escrita, tamanhoAnterior, null);
+		count = escrita;
+		if (metrics != null)
+		  metrics.removed(tamanhoAnterior - escrita, leitura);
+		shrinkIfNeeded();
+	  }
+	  return count != tamanhoAnterior;
 	}
+  }
 
-	if (!revalidate())
-	  throw new RegisterValidationException(REMOVAL);
+  /**
+   * Remove todos os elementos que estão contidos na coleção passada.
+   * 
+   * @param collection elementos que serão removidos.
+   * @return verdadeiro caso algum elemento tenha sido removido.
+   * @throws NullPointerException caso a coleção seja nula.
+   **/
+  public boolean removeAll(Collection<?> collection) {
+
+	if (collection == null)
+	  throw new NullPointerException("Coleção nula.");
+
+	return removeIf(element -> collection.contains(element));
+  }
+
+  /**
+   * Mantém somente os elementos que estão contidos na coleção passada.
+   * 
+   * @param collection elementos que serão mantidos.
+   * @return verdadeiro caso algum elemento tenha sido removido.
+   * @throws NullPointerException caso a coleção seja nula.
+   **/
+  public boolean retainAll(Collection<?> collection) {
+
+	if (collection == null)
+	  throw new NullPointerException("Coleção nula.");
+
+	return removeIf(element -> !collection.contains(element));
   }
 
   /**
    * Checa se o objeto passado contém na lista.
+   * No modo único a busca é pela chave, em O(1).
    * 
    * @param element objeto para ser adicionado.
    * @return falso caso o objeto passado seja nulo ou se o element não existe. 
@@ -130,15 +357,112 @@ public final class DataRegister<E> {
 	if (element == null)
 	  return false;
 
-	for (int i = 0; i < elements.length; i++) {
-	  if (element.equals(elements[i])) {
-		return true;
+	synchronized (lock) {
+	  if (unique != null) {
+		if (metrics != null)
+		  metrics.searched(1);
+		E achado = unique.get(uniqueKey.apply(element));
+		return achado != null && element.equals(achado);
 	  }
+
+	  for (int i = 0; i < count; i++) {
+		if (element.equals(elements[i])) {
+		  if (metrics != null)
+			metrics.searched(i + 1);
+		  return true;
+		}
+	  }
+	  if (metrics != null)
+		metrics.searched(count);
 	}
 
 	return false;
   }
 
+  /**
+   * Ativa o modo único: a lista mantém um {@link HashIndex} interno das chaves
+   * e rejeita elementos com uma chave que já existe, igual a um índice anexado.
+   * O {@link DataRegister#contains(Object)} passa a buscar pela chave.
+   * 
+   * A chave deve ser coerente com o equals dos elementos
+   * (ex.: {@link org.david.models.Pessoa#getCpfKey()}).
+   * 
+   * @param keyExtractor extrai a chave de cada elemento.
+   * @throws NullPointerException caso o extrator seja nulo.
+   * @throws IllegalStateException caso o modo único já esteja ativo.
+   * @throws IllegalArgumentException caso a lista já tenha chaves repetidas.
+   **/
+  public void setUniqueKey(Function<? super E, ?> keyExtractor) {
+
+	if (keyExtractor == null)
+	  throw new NullPointerException("Extrator de chave nulo.");
+
+	synchronized (lock) {
+	  if (unique != null)
+		throw new IllegalStateException("O modo único já está ativo.");
+
+	  HashIndex<Object, E> indice = new HashIndex<>(keyExtractor, Math.max(HashIndex.INITIAL_CAPACITY, count * 2));
+	  for (int i = 0; i < count; i++) {
+		if (!indice.put((E) elements[i]))
+		  throw new IllegalArgumentException("A lista já possui chaves repetidas.");
+	  }
+
+	  Object[] novosIndices = Arrays.copyOf(indexes, indexes.length + 1);
+	  novosIndices[indexes.length] = indice;
+	  indexes = novosIndices;
+	  uniqueKey = keyExtractor;
+	  unique = indice;
+	}
+  }
+
+  /**
+   * Publica as métricas da lista via JMX com o nome passado, caso elas
+   * estejam ativas (-Dprova2.metrics=true). Desativadas, nada acontece.
+   * Quem publica tira as métricas com o {@link DataRegister#disableMetrics()}.
+   * 
+   * @param name nome da lista, ex.: "pilots".
+   * @see RegisterMetrics
+   **/
+  public void enableMetrics(String name) {
+	RegisterMetrics novas = RegisterMetrics.publish(name, this::size, this::capacity);
+	RegisterMetrics antigas;
+	synchronized (lock) {
+	  antigas = metrics;
+	  metrics = novas;
+	}
+	if (antigas != null)
+	  antigas.unpublish();
+  }
+
+  /**
+   * Tira as métricas da lista do JMX e para de contar.
+   *
+   * @see DataRegister#enableMetrics(String)
+   **/
+  public void disableMetrics() {
+	RegisterMetrics antigas;
+	synchronized (lock) {
+	  antigas = metrics;
+	  metrics = null;
+	}
+	if (antigas != null)
+	  antigas.unpublish();
+  }
+
+  /**
+   * @return as métricas da lista ou null caso estejam desativadas.
+   **/
+  public RegisterMetrics getMetrics() {
+	return metrics;
+  }
+
+  /**
+   * @return se o modo único está ativo.
+   **/
+  public boolean isUnique() {
+	return unique != null;
+  }
+
   /**
    * Expande a lista em 'n' elementos.
    * 
@@ -151,16 +475,143 @@ public final class DataRegister<E> {
 	if (expandir < 0)
 	  throw new IllegalArgumentException("Você não pode expandir com valores negativos.");
 
-	Object[] novaListaExpandida = new Object[elements.length + expandir];
+	synchronized (lock) {
+	  Object[] novaListaExpandida = new Object[elements.length + expandir];
+	  System.arraycopy(elements, 0, novaListaExpandida, 0, elements.length);
+
+	  long inicio = metrics != null ? System.nanoTime() : 0;
+	  if (!revalidate())
+		throw new RegisterValidationException(EXPANSION);
 
-	for (int i = 0; i < elements.length; i++) {
-	  novaListaExpandida[i] = elements[i];
+	  if (metrics != null) {
+		metrics.revalidated(System.nanoTime() - inicio);
+		metrics.expanded(elements.length);
+	  }
+
+	  elements = novaListaExpandida;
+	  owned();
 	}
+  }
+
+  /**
+   * Anexa um índice na lista. Os elementos já existentes são indexados
+   * imediatamente e, a partir daí, toda adição, remoção e limpeza da
+   * lista é repassada para o índice.
+   * 
+   * @param index o índice que será anexado.
+   * @throws NullPointerException caso o índice seja nulo.
+   **/
+  public void addIndex(RegisterIndex<? super E> index) {
+
+	if (index == null)
+	  throw new NullPointerException("Índice nulo.");
 
-	if (!revalidate())
-	  throw new RegisterValidationException(EXPANSION);
+	synchronized (lock) {
+	  for (int i = 0; i < count; i++) {
+		index.indexed((E) elements[i]);
+	  }
 
-	elements = novaListaExpandida;
+	  Object[] novosIndices = Arrays.copyOf(indexes, indexes.length + 1);
+	  novosIndices[indexes.length] = index;
+	  indexes = novosIndices;
+	}
+  }
+
+  /**
+   * Verifica se todos os índices anexados aceitam o elemento.
+   * 
+   * @throws IllegalArgumentException caso algum índice rejeite o elemento.
+   **/
+  private void checkIndexes(E element) {
+	if (!acceptedByIndexes(element))
+	  throw new IllegalArgumentException("Elemento rejeitado pelo índice da lista.");
+  }
+
+  private boolean acceptedByIndexes(E element) {
+	for (int i = 0; i < indexes.length; i++) {
+	  if (!((RegisterIndex<? super E>) indexes[i]).accepts(element))
+		return false;
+	}
+	return true;
+  }
+
+  private void notifyIndexed(E element) {
+	for (int i = 0; i < indexes.length; i++) {
+	  ((RegisterIndex<? super E>) indexes[i]).indexed(element);
+	}
+  }
+
+  private void notifyUnindexed(E element) {
+	for (int i = 0; i < indexes.length; i++) {
+	  ((RegisterIndex<? super E>) indexes[i]).unindexed(element);
+	}
+  }
+
+  /**
+   * Aumenta a capacidade conforme a {@link CapacityPolicy} da lista. A padrão
+   * é geométrica, multiplicando pelo {@link DataRegister#GROWTH_FACTOR} (mas
+   * nunca menos que o {@link DataRegister#DYNAMICALLY_EXPANSION}), assim
+   * adicionar N elementos custa O(1) amortizado.
+   * 
+   * @throws IndexOutOfBoundsException caso a política não permita crescer.
+   * @throws RegisterValidationException caso a lista não consiga ser revalidada. 
+   **/
+  private void grow() throws RegisterValidationException {
+	int novaCapacidade = capacityPolicy.grow(elements.length, count + 1);
+
+	if (novaCapacidade <= elements.length)
+	  throw new IndexOutOfBoundsException("Registrador atingiu a capacidade máxima.");
+
+	expand(novaCapacidade - elements.length);
+  }
+
+  /**
+   * Diminui a capacidade caso a política peça, depois de remoções.
+   **/
+  private void shrinkIfNeeded() {
+	int desejada = capacityPolicy.shrink(elements.length, count);
+	if (desejada < elements.length && desejada >= count)
+	  resize(desejada);
+  }
+
+  /**
+   * Troca o vetor por um do tamanho passado, que cabe todos os elementos.
+   **/
+  private void resize(int capacidade) {
+	elements = Arrays.copyOf(elements, capacidade);
+	owned();
+	if (metrics != null)
+	  metrics.copied(count);
+  }
+
+  /**
+   * Diminui a capacidade para a quantidade de elementos, liberando o
+   * espaço que sobrou depois de remoções.
+   **/
+  public void trimToSize() {
+	synchronized (lock) {
+	  if (count < elements.length)
+		resize(count);
+	}
+  }
+
+  /**
+   * Troca a política de capacidade, usada a partir das próximas mudanças.
+   * 
+   * @throws NullPointerException caso a política seja nula.
+   **/
+  public void setCapacityPolicy(CapacityPolicy capacityPolicy) {
+
+	if (capacityPolicy == null)
+	  throw new NullPointerException("Política de capacidade nula.");
+
+	synchronized (lock) {
+	  this.capacityPolicy = capacityPolicy;
+	}
+  }
+
+  public CapacityPolicy getCapacityPolicy() {
+	return capacityPolicy;
   }
 
   /**
@@ -181,7 +632,7 @@ public final class DataRegister<E> {
    **/
   private boolean revalidate() {
 	try {
-	  synchronized (elements) {
+	  synchronized (lock) {
 		for (int i = 1; i < elements.length; i++) {
 		  if (elements[i] != null && !containPrevious(i) /* elemento anterior nulo */) {
 			swapPositions(i);
@@ -222,15 +673,17 @@ public final class DataRegister<E> {
   /**
    * Procura um espaço vazio na lista. Caso nenhum espaço seja encontrado,
    * o metodo retornará a constante {@link DataRegister#SEM_ESPACO}.
+   * 
+   * Como o {@link DataRegister#revalidate()} mantém a lista compactada
+   * (nenhum nulo antes de um valor real), o primeiro espaço vazio é sempre
+   * a posição logo após o último elemento, ou seja, o próprio 'count'.
    **/
   private int findFirst() {
-	if (elements.length > 0) {
-	  for (int i = 0; i < elements.length; i++) {
-		if (elements[i] == null) {
-		  return i;
-		}
-	  }
-	}
+	if (metrics != null)
+	  metrics.foundFirst(1);
+
+	if (count < elements.length)
+	  return count;
 
 	return SEM_ESPACO;
   }
@@ -247,6 +700,9 @@ public final class DataRegister<E> {
 	if(index < 0 || index > size())
 	  throw new IndexOutOfBoundsException(index + " fora dos limites.");
 
+	if (metrics != null)
+	  metrics.read();
+
 	return (E) elements[index];
   }
 
@@ -264,25 +720,219 @@ public final class DataRegister<E> {
 	if (consumer == null)
 	  throw new NullPointerException("Null consumer.");
 
-	synchronized (elements) {
+	if (snapshotIteration) {
+	  Object[] versao;
+	  int tamanho;
+	  synchronized (lock) {
+		versao = elements;
+		tamanho = count;
+		readers++;
+	  }
+	  try {
+		for (int i = 0; i < tamanho; i++) {
+		  consumer.execute((E) versao[i]);
+		}
+	  } finally {
+		release(versao);
+	  }
+	  return;
+	}
+
+	synchronized (lock) {
 	  for (int i = 0; i < size(); i++) {
 		consumer.execute((E)elements[i]);
 	  }
 	}
   }
 
+  /**
+   * Igual ao {@link DataRegister#forEach(Iterateable)}, para quem usa a lista
+   * como {@link Iterable}.
+   *
+   * @throws NullPointerException caso o consumer seja nulo. 
+   **/
+  @Override
+  public void forEach(Consumer<? super E> consumer) {
+
+	if (consumer == null)
+	  throw new NullPointerException("Null consumer.");
+
+	forEach((Iterateable<E>) consumer::accept);
+  }
+
+  /**
+   * Percorre uma versão imutável da lista, do momento da chamada.
+   * O {@link Iterator#remove()} não é suportado.
+   **/
+  @Override
+  public Iterator<E> iterator() {
+	return Spliterators.iterator(spliterator());
+  }
+
+  /**
+   * Spliterator sobre uma versão imutável da lista, do momento da chamada.
+   * A versão é compartilhada sem cópia, como no modo snapshot: a próxima
+   * remoção é que copia o vetor. Os elementos ficam compactados no vetor,
+   * então a divisão é sempre ao meio e os tamanhos são exatos.
+   **/
+  @Override
+  public Spliterator<E> spliterator() {
+	Object[] versao;
+	int tamanho;
+	synchronized (lock) {
+	  versao = elements;
+	  tamanho = count;
+	  streamed = true;
+	}
+	return Spliterators.spliterator(versao, 0, tamanho,
+		Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+  }
+
+  /**
+   * @return uma stream sequencial sobre a versão atual da lista.
+   **/
+  public Stream<E> stream() {
+	return StreamSupport.stream(spliterator(), false);
+  }
+
+  /**
+   * @return uma stream paralela sobre a versão atual da lista, dividida
+   * em partes iguais entre os núcleos.
+   **/
+  public Stream<E> parallelStream() {
+	return StreamSupport.stream(spliterator(), true);
+  }
+
+  /**
+   * Exerce uma ação para uma página da lista, começando pela posição 'from'.
+   * O lock só é segurado durante a página, então a lista pode ser percorrida
+   * aos poucos, sem percorrer de novo o que já foi visto.
+   *
+   * Remoções entre uma página e outra deslocam as posições, assim como no
+   * {@link DataRegister#get(int)}.
+   *
+   * @param from posição do primeiro elemento da página.
+   * @param limit quantidade máxima de elementos da página.
+   * @return a posição do próximo elemento, igual ao {@link DataRegister#size()}
+   * quando a lista acabou.
+   * @throws NullPointerException caso o consumer seja nulo.
+   * @throws IllegalArgumentException caso a posição ou o limite sejam negativos.
+   **/
+  public int forEach(int from, int limit, Iterateable<E> consumer) {
+
+	if (consumer == null)
+	  throw new NullPointerException("Null consumer.");
+
+	if (from < 0 || limit < 0)
+	  throw new IllegalArgumentException("Posição ou limite negativo.");
+
+	if (snapshotIteration) {
+	  Object[] versao;
+	  int fim;
+	  synchronized (lock) {
+		versao = elements;
+		fim = (int) Math.min((long) from + limit, count);
+		readers++;
+	  }
+	  try {
+		for (int i = from; i < fim; i++) {
+		  consumer.execute((E) versao[i]);
+		}
+	  } finally {
+		release(versao);
+	  }
+	  return fim;
+	}
+
+	synchronized (lock) {
+	  int fim = (int) Math.min((long) from + limit, count);
+	  for (int i = from; i < fim; i++) {
+		consumer.execute((E) elements[i]);
+	  }
+	  return fim;
+	}
+  }
+
+  /**
+   * Ativa ou desativa a iteração por snapshot.
+   * 
+   * Com ela ativa, o {@link DataRegister#forEach(Iterateable)} só segura o monitor
+   * para pegar a versão atual do vetor e o tamanho dela, percorrendo tudo sem travar
+   * quem escreve. Adições no fim não alteram as posições que o leitor enxerga, então
+   * continuam no mesmo vetor; remoções e limpezas publicam um vetor novo caso algum
+   * leitor ainda esteja usando o atual (copy-on-write).
+   * 
+   * @param snapshotIteration verdadeiro para ativar.
+   **/
+  public void setSnapshotIteration(boolean snapshotIteration) {
+	synchronized (lock) {
+	  this.snapshotIteration = snapshotIteration;
+	}
+  }
+
+  /**
+   * @return se a iteração por snapshot está ativa.
+   **/
+  public boolean isSnapshotIteration() {
+	return snapshotIteration;
+  }
+
+  /**
+   * Garante que o vetor atual não é lido por nenhum snapshot antes de
+   * alterar as posições já ocupadas, copiando ele se precisar.
+   * Deve ser chamado segurando o monitor.
+   **/
+  private void unshare() {
+	if (readers > 0 || streamed) {
+	  elements = elements.clone();
+	  owned();
+	  if (metrics != null)
+		metrics.copied(elements.length);
+	}
+  }
+
+  /**
+   * O vetor atual acabou de ser criado, nenhum leitor enxerga ele.
+   * Deve ser chamado segurando o monitor.
+   **/
+  private void owned() {
+	readers = 0;
+	streamed = false;
+  }
+
+  /**
+   * Fim de um forEach em modo snapshot. Leitores de um vetor que já foi
+   * trocado não contam mais.
+   **/
+  private void release(Object[] versao) {
+	synchronized (lock) {
+	  if (versao == elements)
+		readers--;
+	}
+  }
+
   /**
    * Limpa a lista
    * @throws RegisterValidationException caso a lista não consiga ser revalidada. 
    **/
   public void clear() throws RegisterValidationException {
-	synchronized (elements) {
+	synchronized (lock) {
+	  if (readers > 0 || streamed) {
+		elements = new Object[elements.length];
+		owned();
+		count = 0;
+	  }
 	  for(int i = 0; i < elements.length; i++) {
 		if(elements[i] != null) {
 		  elements[i] = null;
 		  count--;
 		}
 	  }
+
+	  for (int i = 0; i < indexes.length; i++) {
+		((RegisterIndex<? super E>) indexes[i]).cleared();
+	  }
+	  shrinkIfNeeded();
 	}
   }
 
@@ -301,11 +951,21 @@ public final class DataRegister<E> {
 
   /**
    * Escreve todos os elements da lista.
+   * Os elementos vão direto para a saída, por um buffer de tamanho fixo.
    * @param before string antes da lista
+   * @throws UncheckedIOException caso a saída não consiga escrever.
    **/
   public void see(String before) {
-	String joinedString = Utils.join(this, ", ");
-	System.out.println(before + "[" + joinedString + "]");
+	Writer out = new BufferedWriter(new OutputStreamWriter(System.out), SEE_BUFFER_SIZE);
+	try {
+	  out.append(before).append('[');
+	  Utils.join(out, this, ", ");
+	  out.append(']').append(System.lineSeparator());
+	  /* sem close, para não fechar o System.out */
+	  out.flush();
+	} catch (IOException e) {
+	  throw new UncheckedIOException(e);
+	}
   }
 
   /**
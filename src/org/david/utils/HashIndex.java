@@ -0,0 +1,218 @@
+package org.david.utils;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Índice de espalhamento (hash) com endereçamento aberto e sondagem linear.
+ * 
+ * Cada elemento é guardado pela chave extraída com o 'keyExtractor', permitindo
+ * buscas em O(1) e rejeitando chaves duplicadas antes delas entrarem no
+ * {@link DataRegister} em que o índice está anexado.
+ * 
+ * @author David Duarte Pinheiro
+ */
+@SuppressWarnings("unchecked")
+public final class HashIndex<K, E> implements RegisterIndex<E> {
+
+  /* 
+   * capacidade inicial padrão (sempre potência de 2)
+   */
+  public static final int INITIAL_CAPACITY = 16;
+
+  /* 
+   * a tabela dobra quando passar dessa ocupação
+   */
+  public static final float LOAD_FACTOR = 0.6f;
+
+  private final Function<? super E, ? extends K> keyExtractor;
+
+  private Object[] keys;
+  private Object[] values;
+  private int count;
+
+  public HashIndex(Function<? super E, ? extends K> keyExtractor, int initialCapacity) {
+
+	if (keyExtractor == null)
+	  throw new NullPointerException("Extrator de chave nulo.");
+
+	this.keyExtractor = keyExtractor;
+	this.keys = new Object[tableSizeFor(initialCapacity)];
+	this.values = new Object[keys.length];
+  }
+
+  public HashIndex(Function<? super E, ? extends K> keyExtractor) {
+	this(keyExtractor, INITIAL_CAPACITY);
+  }
+
+  /**
+   * Busca o elemento pela chave.
+   * 
+   * @return o elemento ou null caso a chave não exista.
+   */
+  public E get(Object key) {
+	if (key == null)
+	  return null;
+
+	int slot = find(key);
+	return slot < 0 ? null : (E) values[slot];
+  }
+
+  /**
+   * @return se existe algum elemento com a chave passada.
+   */
+  public boolean containsKey(Object key) {
+	return key != null && find(key) >= 0;
+  }
+
+  /**
+   * Adiciona o elemento no índice.
+   * 
+   * @return falso caso a chave do elemento já exista.
+   * @throws NullPointerException caso o elemento ou a sua chave sejam nulos.
+   */
+  public boolean put(E element) {
+
+	K key = keyOf(element);
+
+	if ((count + 1) > keys.length * LOAD_FACTOR)
+	  rehash(keys.length << 1);
+
+	int mask = keys.length - 1;
+	for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+	  if (keys[i] == null) {
+		keys[i] = key;
+		values[i] = element;
+		count++;
+		return true;
+	  }
+	  if (key.equals(keys[i]))
+		return false;
+	}
+  }
+
+  /**
+   * Remove o elemento do índice, caso ele seja o dono da chave.
+   * 
+   * @return verdadeiro caso tenha sido removido.
+   */
+  public boolean delete(E element) {
+
+	int slot = find(keyOf(element));
+
+	if (slot < 0 || values[slot] != element)
+	  return false;
+
+	shiftBackwards(slot);
+	count--;
+	return true;
+  }
+
+  /**
+   * @return quantas chaves o índice possui.
+   */
+  public int size() {
+	return count;
+  }
+
+  @Override
+  public boolean accepts(E element) {
+	return !containsKey(keyOf(element));
+  }
+
+  @Override
+  public void indexed(E element) {
+	put(element);
+  }
+
+  @Override
+  public void unindexed(E element) {
+	delete(element);
+  }
+
+  @Override
+  public void cleared() {
+	Arrays.fill(keys, null);
+	Arrays.fill(values, null);
+	count = 0;
+  }
+
+  /**
+   * Procura a posição da chave na tabela.
+   * 
+   * @return a posição ou -1 caso a chave não exista.
+   */
+  private int find(Object key) {
+	int mask = keys.length - 1;
+	for (int i = hash(key) & mask; keys[i] != null; i = (i + 1) & mask) {
+	  if (key.equals(keys[i]))
+		return i;
+	}
+	return -1;
+  }
+
+  /**
+   * Remove a posição passada sem deixar marcadores, trazendo para trás
+   * as chaves seguintes que dependiam dela para serem encontradas.
+   */
+  private void shiftBackwards(int slot) {
+	int mask = keys.length - 1;
+	int vazio = slot;
+	for (int i = (slot + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+	  int ideal = hash(keys[i]) & mask;
+	  /* a chave só pode voltar se o espaço vazio estiver entre o ideal e ela */
+	  if (((i - ideal) & mask) >= ((i - vazio) & mask)) {
+		keys[vazio] = keys[i];
+		values[vazio] = values[i];
+		vazio = i;
+	  }
+	}
+	keys[vazio] = null;
+	values[vazio] = null;
+  }
+
+  private void rehash(int newCapacity) {
+	Object[] oldKeys = keys;
+	Object[] oldValues = values;
+	keys = new Object[newCapacity];
+	values = new Object[newCapacity];
+
+	int mask = newCapacity - 1;
+	for (int j = 0; j < oldKeys.length; j++) {
+	  if (oldKeys[j] != null) {
+		int i = hash(oldKeys[j]) & mask;
+		while (keys[i] != null) {
+		  i = (i + 1) & mask;
+		}
+		keys[i] = oldKeys[j];
+		values[i] = oldValues[j];
+	  }
+	}
+  }
+
+  private K keyOf(E element) {
+
+	if (element == null)
+	  throw new NullPointerException("Não é possível indexar um valor nulo.");
+
+	K key = keyExtractor.apply(element);
+
+	if (key == null)
+	  throw new NullPointerException("Não é possível indexar uma chave nula.");
+
+	return key;
+  }
+
+  private static int hash(Object key) {
+	int h = key.hashCode();
+	return h ^ (h >>> 16);
+  }
+
+  private static int tableSizeFor(int capacity) {
+	int size = INITIAL_CAPACITY;
+	while (size < capacity / LOAD_FACTOR && size < (1 << 30)) {
+	  size <<= 1;
+	}
+	return size;
+  }
+}
@@ -0,0 +1,26 @@
+package org.david.utils;
+
+/**
+ * Guarda no próprio elemento a posição dele dentro de um índice
+ * (ex.: no vetor de um nó do {@link PrefixIndex}), então o índice remove o
+ * elemento sem procurar por ele e sem nenhum mapa à parte.
+ *
+ * A posição guardada é só uma dica: o índice confere se o elemento está
+ * mesmo nela e, caso não esteja (ex.: o mesmo elemento em duas listas),
+ * procura por ele como faria sem a posição.
+ *
+ * @author David Duarte Pinheiro
+ */
+public interface IndexSlot<E> {
+
+  /**
+   * @return a última posição gravada no elemento.
+   */
+  int get(E element);
+
+  /**
+   * Grava a posição do elemento.
+   */
+  void set(E element, int slot);
+
+}
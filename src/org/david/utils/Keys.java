@@ -11,5 +11,10 @@ public final class Keys {
   public static final String LICENSE_KEY = "key";
   public static final String QUIT_KEY = "quit";
   public static final String EXPAND_KEY = "expand";
+  public static final String FILE_KEY = "file";
+  public static final String NAME_FRAGMENT_KEY = "nameFragment";
+  public static final String NAME_PREFIX_KEY = "namePrefix";
+  public static final String CPF_FROM_KEY = "cpfFrom";
+  public static final String CPF_TO_KEY = "cpfTo";
   
 }
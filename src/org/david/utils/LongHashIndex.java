@@ -0,0 +1,210 @@
+package org.david.utils;
+
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
+
+/**
+ * Versão do {@link HashIndex} especializada para chaves do tipo long.
+ * 
+ * As chaves ficam em um vetor primitivo e os elementos em outro, sem objetos
+ * de entrada e sem boxing, então as buscas não alocam memória. Uma posição
+ * está vazia quando o elemento dela é nulo.
+ * 
+ * @author David Duarte Pinheiro
+ */
+@SuppressWarnings("unchecked")
+public final class LongHashIndex<E> implements RegisterIndex<E> {
+
+  /* 
+   * capacidade inicial padrão (sempre potência de 2)
+   */
+  public static final int INITIAL_CAPACITY = 16;
+
+  /* 
+   * a tabela dobra quando passar dessa ocupação
+   */
+  public static final float LOAD_FACTOR = 0.6f;
+
+  private final ToLongFunction<? super E> keyExtractor;
+
+  private long[] keys;
+  private Object[] values;
+  private int count;
+
+  public LongHashIndex(ToLongFunction<? super E> keyExtractor, int initialCapacity) {
+
+	if (keyExtractor == null)
+	  throw new NullPointerException("Extrator de chave nulo.");
+
+	this.keyExtractor = keyExtractor;
+	this.keys = new long[tableSizeFor(initialCapacity)];
+	this.values = new Object[keys.length];
+  }
+
+  public LongHashIndex(ToLongFunction<? super E> keyExtractor) {
+	this(keyExtractor, INITIAL_CAPACITY);
+  }
+
+  /**
+   * Busca o elemento pela chave.
+   * 
+   * @return o elemento ou null caso a chave não exista.
+   */
+  public E get(long key) {
+	int slot = find(key);
+	return slot < 0 ? null : (E) values[slot];
+  }
+
+  /**
+   * @return se existe algum elemento com a chave passada.
+   */
+  public boolean containsKey(long key) {
+	return find(key) >= 0;
+  }
+
+  /**
+   * Adiciona o elemento no índice.
+   * 
+   * @return falso caso a chave do elemento já exista.
+   * @throws NullPointerException caso o elemento seja nulo.
+   */
+  public boolean put(E element) {
+
+	if (element == null)
+	  throw new NullPointerException("Não é possível indexar um valor nulo.");
+
+	long key = keyExtractor.applyAsLong(element);
+
+	if ((count + 1) > keys.length * LOAD_FACTOR)
+	  rehash(keys.length << 1);
+
+	int mask = keys.length - 1;
+	for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+	  if (values[i] == null) {
+		keys[i] = key;
+		values[i] = element;
+		count++;
+		return true;
+	  }
+	  if (keys[i] == key)
+		return false;
+	}
+  }
+
+  /**
+   * Remove o elemento do índice, caso ele seja o dono da chave.
+   * 
+   * @return verdadeiro caso tenha sido removido.
+   */
+  public boolean delete(E element) {
+
+	if (element == null)
+	  return false;
+
+	int slot = find(keyExtractor.applyAsLong(element));
+
+	if (slot < 0 || values[slot] != element)
+	  return false;
+
+	shiftBackwards(slot);
+	count--;
+	return true;
+  }
+
+  /**
+   * @return quantas chaves o índice possui.
+   */
+  public int size() {
+	return count;
+  }
+
+  @Override
+  public boolean accepts(E element) {
+	return element != null && !containsKey(keyExtractor.applyAsLong(element));
+  }
+
+  @Override
+  public void indexed(E element) {
+	put(element);
+  }
+
+  @Override
+  public void unindexed(E element) {
+	delete(element);
+  }
+
+  @Override
+  public void cleared() {
+	Arrays.fill(values, null);
+	count = 0;
+  }
+
+  /**
+   * Procura a posição da chave na tabela.
+   * 
+   * @return a posição ou -1 caso a chave não exista.
+   */
+  private int find(long key) {
+	int mask = keys.length - 1;
+	for (int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask) {
+	  if (keys[i] == key)
+		return i;
+	}
+	return -1;
+  }
+
+  /**
+   * Remove a posição passada sem deixar marcadores, trazendo para trás
+   * as chaves seguintes que dependiam dela para serem encontradas.
+   */
+  private void shiftBackwards(int slot) {
+	int mask = keys.length - 1;
+	int vazio = slot;
+	for (int i = (slot + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+	  int ideal = hash(keys[i]) & mask;
+	  /* a chave só pode voltar se o espaço vazio estiver entre o ideal e ela */
+	  if (((i - ideal) & mask) >= ((i - vazio) & mask)) {
+		keys[vazio] = keys[i];
+		values[vazio] = values[i];
+		vazio = i;
+	  }
+	}
+	values[vazio] = null;
+  }
+
+  private void rehash(int newCapacity) {
+	long[] oldKeys = keys;
+	Object[] oldValues = values;
+	keys = new long[newCapacity];
+	values = new Object[newCapacity];
+
+	int mask = newCapacity - 1;
+	for (int j = 0; j < oldValues.length; j++) {
+	  if (oldValues[j] != null) {
+		int i = hash(oldKeys[j]) & mask;
+		while (values[i] != null) {
+		  i = (i + 1) & mask;
+		}
+		keys[i] = oldKeys[j];
+		values[i] = oldValues[j];
+	  }
+	}
+  }
+
+  /**
+   * Espalha os bits da chave, já que CPFs sequenciais teriam os
+   * mesmos bits baixos.
+   */
+  private static int hash(long key) {
+	long h = key * 0x9E3779B97F4A7C15L;
+	return (int) (h ^ (h >>> 32));
+  }
+
+  private static int tableSizeFor(int capacity) {
+	int size = INITIAL_CAPACITY;
+	while (size < capacity / LOAD_FACTOR && size < (1 << 30)) {
+	  size <<= 1;
+	}
+	return size;
+  }
+}
@@ -0,0 +1,239 @@
+package org.david.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Índice ordenado por uma chave do tipo long (ex.: o CPF), implementado
+ * como uma skip list.
+ * 
+ * Adição, remoção e a busca do início de uma faixa custam O(log N) em média,
+ * e percorrer a faixa custa O(k) pelos k elementos dela. Chaves repetidas são
+ * aceitas e ficam na ordem em que foram adicionadas.
+ * 
+ * @author David Duarte Pinheiro
+ */
+@SuppressWarnings("unchecked")
+public final class LongSkipListIndex<E> implements RegisterIndex<E> {
+
+  /* 
+   * altura máxima de um nó, suficiente para bilhões de elementos.
+   */
+  public static final int MAX_LEVEL = 16;
+
+  private final ToLongFunction<? super E> keyExtractor;
+  private final Node head = new Node(Long.MIN_VALUE, null, MAX_LEVEL);
+
+  /* 
+   * predecessores em cada nível, reutilizado pelas mudanças.
+   */
+  private final Node[] update = new Node[MAX_LEVEL];
+
+  private int level = 1;
+  private int count;
+
+  /* 
+   * estado do gerador das alturas (xorshift).
+   */
+  private int seed = 0x2545F491;
+
+  public LongSkipListIndex(ToLongFunction<? super E> keyExtractor) {
+
+	if (keyExtractor == null)
+	  throw new NullPointerException("Extrator de chave nulo.");
+
+	this.keyExtractor = keyExtractor;
+  }
+
+  /**
+   * Adiciona o elemento no índice.
+   * 
+   * @throws NullPointerException caso o elemento seja nulo.
+   */
+  public void put(E element) {
+
+	if (element == null)
+	  throw new NullPointerException("Não é possível indexar um valor nulo.");
+
+	long key = keyExtractor.applyAsLong(element);
+	Node x = head;
+	for (int i = level - 1; i >= 0; i--) {
+	  /* depois das chaves iguais, mantendo a ordem de adição */
+	  while (x.next[i] != null && x.next[i].key <= key) {
+		x = x.next[i];
+	  }
+	  update[i] = x;
+	}
+
+	int altura = randomLevel();
+	if (altura > level) {
+	  for (int i = level; i < altura; i++) {
+		update[i] = head;
+	  }
+	  level = altura;
+	}
+
+	Node novo = new Node(key, element, altura);
+	for (int i = 0; i < altura; i++) {
+	  novo.next[i] = update[i].next[i];
+	  update[i].next[i] = novo;
+	  update[i] = null;
+	}
+	count++;
+  }
+
+  /**
+   * Remove o elemento do índice.
+   * 
+   * @return se o elemento estava no índice.
+   */
+  public boolean remove(E element) {
+
+	if (element == null)
+	  return false;
+
+	long key = keyExtractor.applyAsLong(element);
+	Node x = head;
+	for (int i = level - 1; i >= 0; i--) {
+	  while (x.next[i] != null && x.next[i].key < key) {
+		x = x.next[i];
+	  }
+	  update[i] = x;
+	}
+
+	Node alvo = x.next[0];
+	while (alvo != null && alvo.key == key && alvo.value != element && !alvo.value.equals(element)) {
+	  alvo = alvo.next[0];
+	}
+
+	boolean achou = alvo != null && alvo.key == key;
+	if (achou) {
+	  for (int i = 0; i < alvo.next.length; i++) {
+		/* pode haver chaves iguais entre o predecessor e o alvo */
+		Node anterior = update[i];
+		while (anterior.next[i] != alvo) {
+		  anterior = anterior.next[i];
+		}
+		anterior.next[i] = alvo.next[i];
+	  }
+	  while (level > 1 && head.next[level - 1] == null) {
+		level--;
+	  }
+	  count--;
+	}
+
+	for (int i = 0; i < MAX_LEVEL; i++) {
+	  update[i] = null;
+	}
+	return achou;
+  }
+
+  /**
+   * @return o primeiro elemento com chave maior ou igual à passada, ou null.
+   */
+  public E ceiling(long key) {
+	Node x = floorNode(key).next[0];
+	return x == null ? null : (E) x.value;
+  }
+
+  /**
+   * Percorre em ordem os elementos com chave entre 'from' e 'to', inclusive.
+   * 
+   * @param limit quantidade máxima de elementos visitados.
+   * @return quantos elementos foram visitados.
+   * @throws NullPointerException caso o consumer seja nulo.
+   */
+  public int range(long from, long to, int limit, Consumer<? super E> consumer) {
+
+	if (consumer == null)
+	  throw new NullPointerException("Null consumer.");
+
+	int visitados = 0;
+	for (Node x = floorNode(from).next[0]; x != null && x.key <= to && visitados < limit; x = x.next[0]) {
+	  consumer.accept((E) x.value);
+	  visitados++;
+	}
+	return visitados;
+  }
+
+  /**
+   * @return os elementos com chave entre 'from' e 'to', inclusive, em ordem.
+   */
+  public List<E> range(long from, long to, int limit) {
+	List<E> resultados = new ArrayList<>();
+	range(from, to, limit, resultados::add);
+	return resultados;
+  }
+
+  /**
+   * Percorre todos os elementos em ordem de chave.
+   */
+  public void forEach(Consumer<? super E> consumer) {
+	range(Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, consumer);
+  }
+
+  /**
+   * @return quantos elementos estão no índice.
+   */
+  public int size() {
+	return count;
+  }
+
+  @Override
+  public void indexed(E element) {
+	put(element);
+  }
+
+  @Override
+  public void unindexed(E element) {
+	remove(element);
+  }
+
+  @Override
+  public void cleared() {
+	for (int i = 0; i < MAX_LEVEL; i++) {
+	  head.next[i] = null;
+	}
+	level = 1;
+	count = 0;
+  }
+
+  /**
+   * @return o último nó com chave menor que a passada (ou a cabeça).
+   */
+  private Node floorNode(long key) {
+	Node x = head;
+	for (int i = level - 1; i >= 0; i--) {
+	  while (x.next[i] != null && x.next[i].key < key) {
+		x = x.next[i];
+	  }
+	}
+	return x;
+  }
+
+  /**
+   * Altura aleatória com probabilidade 1/4 de subir cada nível.
+   */
+  private int randomLevel() {
+	seed ^= seed << 13;
+	seed ^= seed >>> 17;
+	seed ^= seed << 5;
+	/* cada par de bits zerados no fim sobe um nível, o seed nunca é zero */
+	return Math.min(1 + (Integer.numberOfTrailingZeros(seed) >> 1), MAX_LEVEL);
+  }
+
+  private static final class Node {
+
+	final long key;
+	final Object value;
+	final Node[] next;
+
+	Node(long key, Object value, int level) {
+	  this.key = key;
+	  this.value = value;
+	  this.next = new Node[level];
+	}
+  }
+}
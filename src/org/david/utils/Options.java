@@ -1,8 +1,11 @@
 package org.david.utils;
 
 import java.util.Map;
+import java.util.function.Predicate;
 
 import org.david.exceptions.RegisterValidationException;
+import org.david.input.ValueParser;
+import org.david.models.LicenseDictionary;
 import org.david.models.Piloto;
 import org.david.options.DefaultOptionProperty;
 import org.david.options.IDelivery;
@@ -17,6 +20,11 @@ import org.david.options.Property;
  */
 public final class Options {
 
+  /**
+   * Valor que aceita qualquer coisa nos filtros.
+   */
+  public static final String ANY = "*";
+
   /**
    * Essa função estática tem como principal funcionalidade facilitar a
    * implementação das opções na aplicação real.
@@ -51,6 +59,18 @@ public final class Options {
 	return create(null, deliveryHandler, description);
   }
 
+  /**
+   * Cria uma opção escondida do menu, selecionada digitando o nome dela.
+   * 
+   * @param deliveryHandler comunicação após o input
+   * @param name o nome que o usuário digita para executar a opção.
+   */
+  public static DefaultOptionProperty hidden(IDelivery<Map<String, Object>> deliveryHandler, String name) {
+	DefaultOptionProperty optionProperty = create(null, deliveryHandler, name);
+	optionProperty.setDisplayable(false);
+	return optionProperty;
+  }
+
   /**
    * 
    * Essa função providência os dados de input atráves de uma lista de parametros
@@ -77,15 +97,80 @@ public final class Options {
 	return new Property(key, requiredValueType, message);
   }
 
+  /**
+   * Igual ao {@link Options#ask(String, String, Class)}, com um conversor próprio.
+   */
+  public static <T> Property ask(String key, String message, Class<T> requiredValueType, ValueParser<? extends T> parser) {
+	return new Property(key, requiredValueType, parser, message);
+  }
+
   /**
    * Cria um piloto atráves dos dados recebido pelo usuário, vindos pelo
-   * {@link DefaultOptionProperty#execute(java.util.Scanner)}
+   * {@link DefaultOptionProperty#execute(org.david.input.InputSource)}
+   * 
+   * O CPF pode chegar já convertido pelo {@link org.david.input.Parsers#CPF}
+   * ou como texto, que é convertido e validado aqui. Depois disso o piloto
+   * carrega o CPF numérico.
+   * 
+   * @throws IllegalArgumentException caso o CPF seja inválido.
    */
   public static Piloto createPilot(Map<String, Object> deliveryHandlerMap) {
 	if (deliveryHandlerMap == null)
 	  throw new NullPointerException("Mapa nulo.");
 
-	return new Piloto((String) deliveryHandlerMap.get(Keys.CPF_KEY), (String) deliveryHandlerMap.get(Keys.NAME_KEY),
-		(String) deliveryHandlerMap.get(Keys.LICENSE_KEY));
+	Object value = deliveryHandlerMap.get(Keys.CPF_KEY);
+	long cpf = value instanceof Long ? (Long) value : Cpf.parse((String) value);
+
+	if (!Cpf.isValid(cpf))
+	  throw new IllegalArgumentException("CPF inválido.");
+
+	int license = LicenseDictionary.shared().intern((String) deliveryHandlerMap.get(Keys.LICENSE_KEY));
+	return new Piloto(cpf, (String) deliveryHandlerMap.get(Keys.NAME_KEY), license);
+  }
+
+  /**
+   * Filtro dos pilotos pela licença e por um trecho do nome, sem diferenciar
+   * maiúsculas. {@link Options#ANY} aceita qualquer valor.
+   */
+  public static Predicate<Piloto> pilotFilter(String license, String nameFragment) {
+	Predicate<Piloto> filtro = pilot -> true;
+
+	if (license != null && !ANY.equals(license)) {
+	  boolean[] codes = licenseCodesIgnoreCase(license);
+	  filtro = filtro.and(pilot -> pilot.getLicenseCode() >= 0 && pilot.getLicenseCode() < codes.length
+		  && codes[pilot.getLicenseCode()]);
+	}
+
+	if (nameFragment != null && !ANY.equals(nameFragment))
+	  filtro = filtro.and(pilot -> containsIgnoreCase(pilot.getName(), nameFragment));
+
+	return filtro;
+  }
+
+  /**
+   * Marca os códigos das licenças iguais à passada, sem diferenciar maiúsculas.
+   * O filtro compara só os códigos, sem comparar textos para cada piloto.
+   */
+  private static boolean[] licenseCodesIgnoreCase(String license) {
+	LicenseDictionary dictionary = LicenseDictionary.shared();
+	boolean[] codes = new boolean[dictionary.size()];
+	for (int code = 0; code < codes.length; code++) {
+	  codes[code] = license.equalsIgnoreCase(dictionary.license(code));
+	}
+	return codes;
+  }
+
+  /**
+   * Procura o trecho no texto sem criar Strings em minúsculo.
+   */
+  private static boolean containsIgnoreCase(String text, String fragment) {
+	if (text == null)
+	  return false;
+
+	for (int i = 0; i + fragment.length() <= text.length(); i++) {
+	  if (text.regionMatches(true, i, fragment, 0, fragment.length()))
+		return true;
+	}
+	return false;
   }
 }
@@ -0,0 +1,341 @@
+package org.david.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Índice de prefixos (árvore radix) sobre uma chave de texto dos elementos,
+ * ex.: o nome das pessoas.
+ * 
+ * As chaves são normalizadas sem acentos e em minúsculo, então a busca
+ * por "joao" acha "João". Cada nó guarda um trecho da chave e só existe
+ * quando tem elementos ou quando a árvore se divide nele, então uma busca
+ * percorre o tamanho do prefixo mais uma quantidade de nós proporcional
+ * aos resultados.
+ * 
+ * Elementos com a mesma chave ficam no mesmo nó. Com um {@link IndexSlot},
+ * cada elemento guarda a posição dele no nó e a remoção custa O(1) depois de
+ * achar o nó; sem ele, a remoção procura o elemento entre os do nó. Nos dois
+ * casos o último do nó vai para o lugar do removido, então chaves iguais
+ * deixam de ficar na ordem em que foram adicionadas.
+ * 
+ * @author David Duarte Pinheiro
+ */
+@SuppressWarnings("unchecked")
+public final class PrefixIndex<E> implements RegisterIndex<E> {
+
+  private final Function<? super E, String> keyExtractor;
+  private final IndexSlot<? super E> slots;
+  private final Node root = new Node("");
+  private int count;
+
+  /**
+   * @param slots onde cada elemento guarda a posição dele no nó, ou null
+   * para procurar o elemento no nó ao remover.
+   */
+  public PrefixIndex(Function<? super E, String> keyExtractor, IndexSlot<? super E> slots) {
+
+	if (keyExtractor == null)
+	  throw new NullPointerException("Extrator de chave nulo.");
+
+	this.keyExtractor = keyExtractor;
+	this.slots = slots;
+  }
+
+  public PrefixIndex(Function<? super E, String> keyExtractor) {
+	this(keyExtractor, null);
+  }
+
+  /**
+   * Remove os acentos e converte para minúsculo.
+   */
+  public static String normalize(CharSequence text) {
+	String decomposto = Normalizer.normalize(text, Normalizer.Form.NFD);
+	StringBuilder normalizado = new StringBuilder(decomposto.length());
+	for (int i = 0; i < decomposto.length(); i++) {
+	  char c = decomposto.charAt(i);
+	  if (Character.getType(c) != Character.NON_SPACING_MARK)
+		normalizado.append(c);
+	}
+	return normalizado.toString().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Busca os elementos cuja chave começa com o prefixo, ordenados pela chave.
+   * 
+   * @param prefix início da chave, sem diferenciar acentos e maiúsculas.
+   * @param limit quantidade máxima de resultados.
+   * @return os elementos encontrados.
+   * @throws NullPointerException caso o prefixo seja nulo.
+   */
+  public List<E> startingWith(String prefix, int limit) {
+
+	if (prefix == null)
+	  throw new NullPointerException("Prefixo nulo.");
+
+	List<E> resultados = new ArrayList<>();
+	String chave = normalize(prefix);
+	Node node = root;
+	int i = 0;
+	while (i < chave.length()) {
+	  node = node.child(chave.charAt(i));
+	  if (node == null)
+		return resultados;
+
+	  int tamanho = Math.min(node.label.length(), chave.length() - i);
+	  if (!node.label.regionMatches(0, chave, i, tamanho))
+		return resultados;
+	  i += tamanho;
+	}
+	collect(node, limit, resultados);
+	return resultados;
+  }
+
+  /**
+   * Adiciona o elemento no índice. Elementos sem chave são ignorados.
+   * 
+   * @throws NullPointerException caso o elemento seja nulo.
+   */
+  public void put(E element) {
+
+	if (element == null)
+	  throw new NullPointerException("Não é possível indexar um valor nulo.");
+
+	String texto = keyExtractor.apply(element);
+	if (texto == null)
+	  return;
+
+	String chave = normalize(texto);
+	Node node = root;
+	int i = 0;
+	while (i < chave.length()) {
+	  Node filho = node.child(chave.charAt(i));
+	  if (filho == null) {
+		filho = new Node(chave.substring(i));
+		node.addChild(filho);
+		node = filho;
+		break;
+	  }
+
+	  int comum = commonPrefix(filho.label, chave, i);
+	  if (comum < filho.label.length()) {
+		/* divide o nó no ponto em que as chaves se separam */
+		Node meio = new Node(filho.label.substring(0, comum));
+		filho.label = filho.label.substring(comum);
+		node.replaceChild(meio);
+		meio.addChild(filho);
+		filho = meio;
+	  }
+	  node = filho;
+	  i += comum;
+	}
+	int posicao = node.addValue(element);
+	if (slots != null)
+	  slots.set(element, posicao);
+	count++;
+  }
+
+  /**
+   * Remove o elemento do índice, juntando os nós que ficarem sem função.
+   * 
+   * @return se o elemento estava no índice.
+   */
+  public boolean remove(E element) {
+
+	if (element == null)
+	  return false;
+
+	String texto = keyExtractor.apply(element);
+	if (texto == null)
+	  return false;
+
+	String chave = normalize(texto);
+	Node pai = null;
+	Node node = root;
+	int i = 0;
+	while (i < chave.length()) {
+	  Node filho = node.child(chave.charAt(i));
+	  if (filho == null || !chave.startsWith(filho.label, i))
+		return false;
+	  pai = node;
+	  node = filho;
+	  i += filho.label.length();
+	}
+
+	if (!removeValue(node, element))
+	  return false;
+	count--;
+
+	if (node != root && node.valueCount == 0) {
+	  if (node.childCount == 0) {
+		pai.removeChild(node);
+		if (pai != root && pai.valueCount == 0 && pai.childCount == 1)
+		  pai.mergeWithChild();
+	  } else if (node.childCount == 1) {
+		node.mergeWithChild();
+	  }
+	}
+	return true;
+  }
+
+  /**
+   * @return quantos elementos estão no índice.
+   */
+  public int size() {
+	return count;
+  }
+
+  @Override
+  public void indexed(E element) {
+	put(element);
+  }
+
+  @Override
+  public void unindexed(E element) {
+	remove(element);
+  }
+
+  @Override
+  public void cleared() {
+	root.children = Node.NO_CHILDREN;
+	root.firsts = Node.NO_FIRSTS;
+	root.childCount = 0;
+	root.values = Node.NO_VALUES;
+	root.valueCount = 0;
+	count = 0;
+  }
+
+  /**
+   * Percorre a subárvore em ordem, parando no limite.
+   */
+  private void collect(Node node, int limit, List<E> resultados) {
+	for (int i = 0; i < node.valueCount && resultados.size() < limit; i++) {
+	  resultados.add((E) node.values[i]);
+	}
+	for (int i = 0; i < node.childCount && resultados.size() < limit; i++) {
+	  collect(node.children[i], limit, resultados);
+	}
+  }
+
+  /**
+   * Tira o elemento do nó trazendo o último do nó para o lugar dele.
+   */
+  private boolean removeValue(Node node, E element) {
+	int posicao = slots == null ? -1 : slots.get(element);
+	if (posicao < 0 || posicao >= node.valueCount || node.values[posicao] != element)
+	  posicao = node.indexOf(element);
+	if (posicao < 0)
+	  return false;
+
+	int ultimo = --node.valueCount;
+	if (posicao != ultimo) {
+	  node.values[posicao] = node.values[ultimo];
+	  if (slots != null)
+		slots.set((E) node.values[posicao], posicao);
+	}
+	node.values[ultimo] = null;
+	return true;
+  }
+
+  private static int commonPrefix(String label, String chave, int from) {
+	int maximo = Math.min(label.length(), chave.length() - from);
+	int i = 0;
+	while (i < maximo && label.charAt(i) == chave.charAt(from + i)) {
+	  i++;
+	}
+	return i;
+  }
+
+  /**
+   * Nó da árvore. Os filhos ficam ordenados pelo primeiro caractere do trecho,
+   * que é guardado à parte para a busca binária.
+   */
+  private static final class Node {
+
+	static final Node[] NO_CHILDREN = new Node[0];
+	static final char[] NO_FIRSTS = new char[0];
+	static final Object[] NO_VALUES = new Object[0];
+
+	String label;
+	char[] firsts = NO_FIRSTS;
+	Node[] children = NO_CHILDREN;
+	int childCount;
+	Object[] values = NO_VALUES;
+	int valueCount;
+
+	Node(String label) {
+	  this.label = label;
+	}
+
+	Node child(char first) {
+	  int posicao = Arrays.binarySearch(firsts, 0, childCount, first);
+	  return posicao < 0 ? null : children[posicao];
+	}
+
+	void addChild(Node child) {
+	  if (childCount == children.length) {
+		int capacidade = Math.max(2, childCount << 1);
+		children = Arrays.copyOf(children, capacidade);
+		firsts = Arrays.copyOf(firsts, capacidade);
+	  }
+	  int posicao = -Arrays.binarySearch(firsts, 0, childCount, child.label.charAt(0)) - 1;
+	  System.arraycopy(children, posicao, children, posicao + 1, childCount - posicao);
+	  System.arraycopy(firsts, posicao, firsts, posicao + 1, childCount - posicao);
+	  children[posicao] = child;
+	  firsts[posicao] = child.label.charAt(0);
+	  childCount++;
+	}
+
+	/**
+	 * Troca o filho que começa com o mesmo caractere.
+	 */
+	void replaceChild(Node child) {
+	  children[Arrays.binarySearch(firsts, 0, childCount, child.label.charAt(0))] = child;
+	}
+
+	void removeChild(Node child) {
+	  int posicao = Arrays.binarySearch(firsts, 0, childCount, child.label.charAt(0));
+	  System.arraycopy(children, posicao + 1, children, posicao, childCount - posicao - 1);
+	  System.arraycopy(firsts, posicao + 1, firsts, posicao, childCount - posicao - 1);
+	  children[--childCount] = null;
+	}
+
+	/**
+	 * Junta o único filho neste nó, que fica sem elementos.
+	 */
+	void mergeWithChild() {
+	  Node filho = children[0];
+	  label = label + filho.label;
+	  firsts = filho.firsts;
+	  children = filho.children;
+	  childCount = filho.childCount;
+	  values = filho.values;
+	  valueCount = filho.valueCount;
+	}
+
+	/**
+	 * @return a posição em que o valor ficou.
+	 */
+	int addValue(Object value) {
+	  if (valueCount == values.length)
+		values = Arrays.copyOf(values, Math.max(1, valueCount << 1));
+	  values[valueCount] = value;
+	  return valueCount++;
+	}
+
+	/**
+	 * @return a posição do valor, ou -1.
+	 */
+	int indexOf(Object value) {
+	  for (int i = 0; i < valueCount; i++) {
+		if (values[i] == value || values[i].equals(value))
+		  return i;
+	  }
+	  return -1;
+	}
+  }
+}
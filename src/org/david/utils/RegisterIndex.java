@@ -0,0 +1,38 @@
+package org.david.utils;
+
+/**
+ * Interface usada pelos índices que acompanham um {@link DataRegister}.
+ * 
+ * Depois de anexado com {@link DataRegister#addIndex(RegisterIndex)}, o índice
+ * é avisado de toda adição, remoção e limpeza da lista, ficando sempre
+ * sincronizado com ela.
+ * 
+ * @author David Duarte Pinheiro
+ */
+public interface RegisterIndex<E> {
+
+  /**
+   * Chamado antes do elemento ser adicionado na lista.
+   * 
+   * @return falso para rejeitar o elemento (ex.: chave duplicada).
+   */
+  default boolean accepts(E element) {
+	return true;
+  }
+
+  /**
+   * Chamado depois do elemento ser adicionado na lista.
+   */
+  void indexed(E element);
+
+  /**
+   * Chamado depois do elemento ser removido da lista.
+   */
+  void unindexed(E element);
+
+  /**
+   * Chamado depois da lista ser limpa.
+   */
+  void cleared();
+
+}
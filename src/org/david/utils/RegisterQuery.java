@@ -0,0 +1,189 @@
+package org.david.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Consulta sobre um {@link DataRegister}: filtro, limite e projeção.
+ * 
+ * A lista é dividida ao meio pelo {@link DataRegister#spliterator()} até os
+ * pedaços ficarem pequenos, cada pedaço é filtrado numa tarefa do
+ * {@link ForkJoinPool} e os resultados são juntados na ordem da lista.
+ * Quando o limite é atingido as tarefas param de procurar.
+ * 
+ * RegisterQuery.over(pilots).where(p -> ...).limit(10).select(Piloto::getName)
+ * 
+ * @author David Duarte Pinheiro
+ */
+public final class RegisterQuery<E> {
+
+  /* 
+   * tamanho máximo de um pedaço filtrado sem dividir.
+   */
+  public static final int SEGMENT_SIZE = 8 * 1024;
+
+  /* 
+   * de quantos em quantos elementos uma tarefa confere se o limite já foi atingido.
+   */
+  private static final int LIMIT_CHECK_INTERVAL = 256;
+
+  private final DataRegister<E> register;
+  private Predicate<? super E> filter;
+  private int limit = Integer.MAX_VALUE;
+
+  private RegisterQuery(DataRegister<E> register) {
+	this.register = register;
+  }
+
+  /**
+   * @throws NullPointerException caso a lista seja nula.
+   */
+  public static <E> RegisterQuery<E> over(DataRegister<E> register) {
+
+	if (register == null)
+	  throw new NullPointerException("Lista nula.");
+
+	return new RegisterQuery<>(register);
+  }
+
+  /**
+   * Adiciona um filtro, combinado com os anteriores com 'e'.
+   * 
+   * @throws NullPointerException caso o filtro seja nulo.
+   */
+  public RegisterQuery<E> where(Predicate<? super E> filter) {
+
+	if (filter == null)
+	  throw new NullPointerException("Filtro nulo.");
+
+	if (this.filter == null) {
+	  this.filter = filter;
+	} else {
+	  Predicate<? super E> anterior = this.filter;
+	  this.filter = element -> anterior.test(element) && filter.test(element);
+	}
+	return this;
+  }
+
+  /**
+   * Quantidade máxima de resultados. Com limite, os resultados são os primeiros
+   * achados pelas tarefas, não necessariamente os primeiros da lista, mas
+   * sempre na ordem da lista.
+   * 
+   * @throws IllegalArgumentException caso o limite seja negativo.
+   */
+  public RegisterQuery<E> limit(int limit) {
+
+	if (limit < 0)
+	  throw new IllegalArgumentException("Limite negativo.");
+
+	this.limit = limit;
+	return this;
+  }
+
+  /**
+   * Executa a consulta sobre a versão atual da lista.
+   * 
+   * @param projection converte cada elemento achado.
+   * @return os resultados convertidos.
+   * @throws NullPointerException caso a projeção seja nula.
+   */
+  public <R> List<R> select(Function<? super E, ? extends R> projection) {
+
+	if (projection == null)
+	  throw new NullPointerException("Projeção nula.");
+
+	if (limit == 0)
+	  return new ArrayList<>();
+
+	Search<E, R> busca = new Search<>(register.spliterator(), filter, projection, limit, new AtomicInteger());
+	List<R> resultados = busca.estimate() <= SEGMENT_SIZE ? busca.compute() : ForkJoinPool.commonPool().invoke(busca);
+
+	/* cada tarefa pode ter achado alguns a mais antes de perceber o limite */
+	return resultados.size() > limit ? new ArrayList<>(resultados.subList(0, limit)) : resultados;
+  }
+
+  /**
+   * @return os elementos achados.
+   */
+  public List<E> list() {
+	return select(Function.identity());
+  }
+
+  /**
+   * @return quantos elementos satisfazem o filtro, respeitando o limite.
+   */
+  public int count() {
+	return list().size();
+  }
+
+  /**
+   * Tarefa que filtra um pedaço da lista, dividindo ele enquanto for grande.
+   */
+  private static final class Search<E, R> extends RecursiveTask<List<R>> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Spliterator<E> segment;
+	private final Predicate<? super E> filter;
+	private final Function<? super E, ? extends R> projection;
+	private final int limit;
+	private final AtomicInteger found;
+
+	Search(Spliterator<E> segment, Predicate<? super E> filter, Function<? super E, ? extends R> projection,
+		int limit, AtomicInteger found) {
+	  this.segment = segment;
+	  this.filter = filter;
+	  this.projection = projection;
+	  this.limit = limit;
+	  this.found = found;
+	}
+
+	long estimate() {
+	  return segment.estimateSize();
+	}
+
+	@Override
+	protected List<R> compute() {
+	  if (limit != Integer.MAX_VALUE && found.get() >= limit)
+		return new ArrayList<>();
+
+	  if (segment.estimateSize() > SEGMENT_SIZE) {
+		Spliterator<E> esquerda = segment.trySplit();
+		if (esquerda != null) {
+		  Search<E, R> tarefaEsquerda = new Search<>(esquerda, filter, projection, limit, found);
+		  tarefaEsquerda.fork();
+		  List<R> direita = compute();
+		  List<R> resultados = tarefaEsquerda.join();
+		  resultados.addAll(direita);
+		  return resultados;
+		}
+	  }
+
+	  List<R> resultados = new ArrayList<>();
+	  boolean semLimite = limit == Integer.MAX_VALUE;
+	  int[] vistos = { 0 };
+	  boolean[] parar = { false };
+	  Consumer<E> visitar = element -> {
+		if (!semLimite && (++vistos[0] & (LIMIT_CHECK_INTERVAL - 1)) == 0 && found.get() >= limit) {
+		  parar[0] = true;
+		  return;
+		}
+		/* sem limite o contador compartilhado nem é tocado */
+		if ((filter == null || filter.test(element)) && (semLimite || found.getAndIncrement() < limit))
+		  resultados.add(projection.apply(element));
+	  };
+
+	  while (!parar[0] && segment.tryAdvance(visitar))
+		;
+	  return resultados;
+	}
+  }
+}
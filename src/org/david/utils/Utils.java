@@ -1,6 +1,7 @@
 package org.david.utils;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Scanner;
 
 /**
@@ -12,6 +13,11 @@ import java.util.Scanner;
  */
 public final class Utils {
 
+  /* 
+   * quantos elementos o join lê da lista por vez.
+   */
+  private static final int JOIN_PAGE = 256;
+
   /**
    * Junta os elementos da lista de forma encaixada.
    * 
@@ -19,16 +25,61 @@ public final class Utils {
    * @param charSequence o separador
    */
   public static String join(DataRegister<?> elements, CharSequence charSequence) {
-	String joinedString = new String();
-	for (int i = 0; i < elements.size(); i++) {
-	  joinedString += elements.get(i).toString() + ((i == elements.size() - 1) ? "" : charSequence);
+	StringBuilder joined = new StringBuilder(elements.size() * 16);
+	try {
+	  join(joined, elements, charSequence);
+	} catch (IOException e) {
+	  /* StringBuilder não lança IOException */
+	  throw new UncheckedIOException(e);
+	}
+
+	int inicio = 0;
+	int fim = joined.length();
+	while (inicio < fim && joined.charAt(inicio) <= ' ')
+	  inicio++;
+	while (fim > inicio && joined.charAt(fim - 1) <= ' ')
+	  fim--;
+	return joined.substring(inicio, fim);
+  }
+
+  /**
+   * Escreve os elementos da lista direto no destino, separados pelo separador,
+   * sem montar a String inteira antes. A lista é lida de página em página, então
+   * o lock dela não fica preso enquanto o destino escreve.
+   * 
+   * @param out destino, ex.: um {@link java.io.Writer} ou {@link StringBuilder}.
+   * @param elements o DataRegister dos elementos
+   * @param charSequence o separador
+   * @return o próprio destino.
+   * @throws IOException caso o destino não consiga escrever.
+   */
+  public static <A extends Appendable> A join(A out, DataRegister<?> elements, CharSequence charSequence)
+	  throws IOException {
+	Object[] pagina = new Object[JOIN_PAGE];
+	int[] lidos = new int[1];
+	int cursor = 0;
+	boolean primeiro = true;
+
+	while (cursor < elements.size()) {
+	  lidos[0] = 0;
+	  cursor = elements.forEach(cursor, JOIN_PAGE, element -> pagina[lidos[0]++] = element);
+
+	  for (int i = 0; i < lidos[0]; i++) {
+		if (!primeiro)
+		  out.append(charSequence);
+		out.append(String.valueOf(pagina[i]));
+		pagina[i] = null;
+		primeiro = false;
+	  }
 	}
-	return joinedString.trim();
+	return out;
   }
 
   /**
    * Essa classe verifica o tipo pre-requisitado pela aplicação e
    * converte o input do usuário para o formato certo.
+   * 
+   * @see org.david.input.Parsers para converter sem exceções.
    */
   public static Object getScannerByType(Class<?> type, Scanner scanner) {
 	if (type == Integer.class) {